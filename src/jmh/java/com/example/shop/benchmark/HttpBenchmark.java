@@ -0,0 +1,86 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.security.CredentialCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end requests against the embedded Tomcat, authenticated with the preloaded admin user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HttpBenchmark {
+
+    private static final String ADMIN = "admin";
+
+    private ConfigurableApplicationContext context;
+    private CredentialCache credentialCache;
+    private HttpClient client;
+    private HttpRequest existingProduct;
+    private HttpRequest missingProduct;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ShopBenchmarkContext.start();
+        credentialCache = context.getBean(CredentialCache.class);
+        client = HttpClient.newHttpClient();
+
+        String baseUri = "http://localhost:" + ShopBenchmarkContext.port(context);
+        String authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((ADMIN + ":" + ADMIN).getBytes(StandardCharsets.UTF_8));
+        existingProduct = HttpRequest.newBuilder(URI.create(baseUri + "/products/1"))
+                .header("Authorization", authorization)
+                .build();
+        missingProduct = HttpRequest.newBuilder(URI.create(baseUri + "/products/999999999"))
+                .header("Authorization", authorization)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int basicAuthCachedCredentials() throws Exception {
+        return send(existingProduct);
+    }
+
+    @Benchmark
+    public int basicAuthBcrypt() throws Exception {
+        credentialCache.invalidate(ADMIN);
+        return send(existingProduct);
+    }
+
+    @Benchmark
+    public int productNotFound() throws Exception {
+        return send(missingProduct);
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
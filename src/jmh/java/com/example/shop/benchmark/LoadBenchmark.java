@@ -0,0 +1,150 @@
+package com.example.shop.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform versus virtual request threads under a closed-loop load of {@code connections} requests kept
+ * in flight at all times. The measured request reports latency percentiles (SampleTime) and its own
+ * throughput; {@code backgroundRequests} reports the throughput of the whole load (Throughput mode). Virtual threads only
+ * take effect when the forked JVM is Java 21 or newer, e.g. {@code mvn -Pbenchmark,java21 verify
+ * -Djmh.args="LoadBenchmark"}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xss512k")
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class LoadBenchmark {
+
+    private static final String ADMIN = "admin";
+
+    @State(Scope.Benchmark)
+    public static class Load {
+
+        @Param({"platform", "virtual"})
+        public String threads;
+
+        @Param({"1000", "10000"})
+        public int connections;
+
+        // /products/1 is served from the product cache, /orders reads a page from the database
+        @Param({"/products/1", "/orders?size=20"})
+        public String endpoint;
+
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong inFlight = new AtomicLong();
+
+        ConfigurableApplicationContext context;
+        HttpClient client;
+        HttpRequest request;
+        volatile boolean running;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            context = "virtual".equals(threads)
+                    ? ShopBenchmarkContext.start("spring.profiles.active=virtual-threads")
+                    : ShopBenchmarkContext.start("server.tomcat.max-connections=20000");
+            if ("virtual".equals(threads) && !Threading.VIRTUAL.isActive(context.getEnvironment())) {
+                System.err.println("Virtual threads need Java 21+, running on " + Runtime.version()
+                        + "; this trial measures platform threads");
+            }
+
+            client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            String authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((ADMIN + ":" + ADMIN).getBytes(StandardCharsets.UTF_8));
+            request = HttpRequest.newBuilder(URI.create("http://localhost:" + ShopBenchmarkContext.port(context) + endpoint))
+                    .header("Authorization", authorization)
+                    .build();
+            // fill the credential cache first, or every opening connection pays for its own BCrypt check
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+
+            running = true;
+            for (int i = 0; i < connections; i++) {
+                sendInBackground();
+            }
+        }
+
+        private void sendInBackground() {
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                        } else {
+                            completed.incrementAndGet();
+                        }
+                        if (running) {
+                            sendInBackground();
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (failed.get() > 0) {
+                System.err.println(failed.get() + " background requests failed");
+            }
+            context.close();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Background {
+
+        public long backgroundRequests;
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start(Load load) {
+            backgroundRequests = 0;
+            start = load.completed.get();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(Load load) {
+            backgroundRequests = load.completed.get() - start;
+        }
+    }
+
+    @Benchmark
+    public int request(Load load, Background background) throws Exception {
+        return load.client.send(load.request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
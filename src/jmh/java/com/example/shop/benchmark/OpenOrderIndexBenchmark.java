@@ -0,0 +1,105 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.reporting.LongMultimap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint of the open order index against a {@code HashMap<Long, List<Long>>} holding the same
+ * product to order id pairs. Each invocation indexes {@code orders} single line orders, spread evenly over
+ * {@code products}, and reports the heap they retain after a full collection as {@code retainedBytes} and
+ * {@code bytesPerOrder}. The score is the build time, including the full collections around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:+UseG1GC"})
+@Warmup(iterations = 1)
+// aux counters add up over iterations, so one measured iteration reports the footprint as it is
+@Measurement(iterations = 1)
+public class OpenOrderIndexBenchmark {
+
+    @Param({"10000000"})
+    public int orders;
+
+    @Param({"1000", "1000000"})
+    public int products;
+
+    private long[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        productIds = new long[orders];
+        for (int i = 0; i < orders; i++) {
+            productIds[i] = 1 + random.nextInt(products);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+
+        public long retainedBytes;
+        public double bytesPerOrder;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+            bytesPerOrder = 0;
+        }
+
+        void measure(long before, Object index, int orders) {
+            retainedBytes = usedHeap() - before;
+            bytesPerOrder = (double) retainedBytes / orders;
+            Reference.reachabilityFence(index);
+        }
+    }
+
+    @Benchmark
+    public void primitive(Footprint footprint) {
+        long before = usedHeap();
+        LongMultimap index = new LongMultimap();
+        for (int i = 0; i < orders; i++) {
+            index.put(productIds[i], i + 1L);
+        }
+        footprint.measure(before, index, orders);
+    }
+
+    @Benchmark
+    public void boxed(Footprint footprint) {
+        long before = usedHeap();
+        Map<Long, List<Long>> index = new HashMap<>();
+        for (int i = 0; i < orders; i++) {
+            index.computeIfAbsent(productIds[i], id -> new ArrayList<>()).add(i + 1L);
+        }
+        footprint.measure(before, index, orders);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.model.Order;
+import com.example.shop.model.Order.Status;
+import com.example.shop.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page of filtered order queries over a large PRODUCT_ORDER table with one ORDER_LINE per order, with
+ * and without the order indexes. The H2 plan of each query shape is printed at setup, showing which index it uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderQueryBenchmark {
+
+    private static final List<String> INDEXES = List.of("IDX_ORDER_LINE_PRODUCT", "IDX_ORDER_STATUS");
+    private static final Limit PAGE = Limit.of(50);
+    private static final Sort BY_ID = Sort.by("id");
+
+    @Param({"10000000"})
+    public int orders;
+
+    @Param({"10000"})
+    public int products;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ShopBenchmarkContext.start();
+        orderService = context.getBean(OrderService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        if (!indexed) {
+            INDEXES.forEach(index -> jdbcTemplate.execute("drop index " + index));
+        }
+        // ids far above the sequence so the generated rows never collide with orders created through JPA
+        jdbcTemplate.update("insert into product_order (id, status, version)"
+                + " select x + 1000000000, mod(x, ?), 0 from system_range(1, ?)",
+                Status.values().length, orders);
+        jdbcTemplate.update("insert into order_line (order_id, line_number, product_id, quantity)"
+                + " select x + 1000000000, 0, mod(x, ?), 1 + mod(x, 5) from system_range(1, ?)",
+                products, orders);
+        jdbcTemplate.execute("analyze");
+
+        explain(jdbcTemplate, "product_order o join order_line l on l.order_id = o.id where l.product_id = 42");
+        explain(jdbcTemplate, "product_order o where o.status = " + Status.IN_PROGRESS.ordinal());
+        explain(jdbcTemplate, "product_order o join order_line l on l.order_id = o.id where l.product_id = 42"
+                + " and o.status = " + Status.IN_PROGRESS.ordinal());
+    }
+
+    private static void explain(JdbcTemplate jdbcTemplate, String query) {
+        String plan = jdbcTemplate.queryForObject("explain select o.* from " + query + " order by o.id fetch first 51 rows only",
+                String.class);
+        System.out.println(plan);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Window<Order> ordersOfProduct() {
+        return orderService.getOrderPage(randomProduct(), null, null, PAGE, BY_ID);
+    }
+
+    @Benchmark
+    public Window<Order> inProgressOrders() {
+        return orderService.getOrderPage(null, Status.IN_PROGRESS, null, PAGE, BY_ID);
+    }
+
+    @Benchmark
+    public Window<Order> inProgressOrdersOfProduct() {
+        return orderService.getOrderPage(randomProduct(), Status.IN_PROGRESS, null, PAGE, BY_ID);
+    }
+
+    private Long randomProduct() {
+        return (long) ThreadLocalRandom.current().nextInt(products);
+    }
+}
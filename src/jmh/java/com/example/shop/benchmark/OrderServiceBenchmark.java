@@ -0,0 +1,70 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.model.Order;
+import com.example.shop.model.Product;
+import com.example.shop.service.OrderService;
+import com.example.shop.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderServiceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean ledger;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private Long productId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ShopBenchmarkContext.start("shop.inventory.ledger.enabled=" + ledger);
+        orderService = context.getBean(OrderService.class);
+        productId = context.getBean(ProductService.class)
+                .addProduct(new Product("Benchmark product", 1.0, Integer.MAX_VALUE / 2))
+                .getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Order addOrder() {
+        return orderService.addOrder(new Order(productId, 1, null));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Order addOrderContended() {
+        return orderService.addOrder(new Order(productId, 1, null));
+    }
+
+    @Benchmark
+    public Order addAndCancelOrder() {
+        Order order = orderService.addOrder(new Order(productId, 1, null));
+        return orderService.cancelOrder(order.getId());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.pricing.PriceSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range queries over ten years of price changes of one product, a change every five minutes on average
+ * (about 1M changes). Each operation reads a window of {@code days} starting at a random time, from the
+ * delta-encoded {@link PriceSeries} and from a {@code TreeMap<Long, Double>} holding the same changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PriceHistoryBenchmark {
+
+    private static final long START = 1_500_000_000_000L;
+    private static final long YEARS_MILLIS = TimeUnit.DAYS.toMillis(3650);
+    private static final long AVERAGE_GAP_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    @Param({"1", "30"})
+    public int days;
+
+    private PriceSeries series;
+    private TreeMap<Long, Double> boxed;
+    private SplittableRandom random;
+    private long window;
+
+    @Setup
+    public void setUp() {
+        series = new PriceSeries();
+        boxed = new TreeMap<>();
+        random = new SplittableRandom(42);
+        window = TimeUnit.DAYS.toMillis(days);
+        long cents = 10_000;
+        for (long time = START; time < START + YEARS_MILLIS; time += random.nextLong(1, 2 * AVERAGE_GAP_MILLIS)) {
+            cents = Math.max(1, cents + random.nextInt(-100, 101));
+            series.append(time, cents / 100.0);
+            boxed.put(time, cents / 100.0);
+        }
+    }
+
+    @Benchmark
+    public void columnar(Blackhole blackhole) {
+        long from = START + random.nextLong(YEARS_MILLIS - window);
+        series.forEach(from, from + window, (time, price) -> {
+            blackhole.consume(time);
+            blackhole.consume(price);
+        });
+    }
+
+    @Benchmark
+    public void treeMap(Blackhole blackhole) {
+        long from = START + random.nextLong(YEARS_MILLIS - window);
+        for (Map.Entry<Long, Double> change : boxed.subMap(from, from + window).entrySet()) {
+            blackhole.consume((long) change.getKey());
+            blackhole.consume((double) change.getValue());
+        }
+    }
+}
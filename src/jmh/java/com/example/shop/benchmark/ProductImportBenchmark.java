@@ -0,0 +1,112 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.dto.ProductImportResult;
+import com.example.shop.service.ProductImportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One import of a generated catalog per invocation, into a fresh database. The body is produced while it is
+ * read, so the heap limit leaves room for the H2 tables and the search index but not for the import itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ProductImportBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"CSV", "NDJSON"})
+    public ProductImportService.Format format;
+
+    @Param({"1000"})
+    public int chunkSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductImportService importService;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        context = ShopBenchmarkContext.start("shop.import.chunk-size=" + chunkSize);
+        importService = context.getBean(ProductImportService.class);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        // the in-memory database outlives the context otherwise, and every invocation leaves a million rows
+        context.getBean(JdbcTemplate.class).execute("drop all objects");
+        context.close();
+    }
+
+    @Benchmark
+    public ProductImportResult importCatalog() throws Exception {
+        ProductImportResult result = importService.importProducts(new CatalogStream(rows, format), format);
+        if (result.getImported() != rows) throw new IllegalStateException("Imported " + result.getImported() + " of " + rows);
+        return result;
+    }
+
+    /**
+     * Generates the rows of a catalog on demand.
+     */
+    private static final class CatalogStream extends InputStream {
+        private final int rows;
+        private final ProductImportService.Format format;
+        private int row = -1;
+        private byte[] line = new byte[0];
+        private int position;
+
+        CatalogStream(int rows, ProductImportService.Format format) {
+            this.rows = rows;
+            this.format = format;
+            if (format == ProductImportService.Format.CSV) line = "name,price,stock\n".getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length && !next()) return -1;
+            return line[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            if (position == line.length && !next()) return -1;
+            int count = Math.min(length, line.length - position);
+            System.arraycopy(line, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean next() {
+            if (++row >= rows) return false;
+            String name = "Supplier item " + row + " size " + (row % 7);
+            String text = format == ProductImportService.Format.CSV
+                    ? name + "," + (row % 1000) / 10.0 + "," + row % 500 + "\n"
+                    : "{\"name\":\"" + name + "\",\"price\":" + (row % 1000) / 10.0 + ",\"stock\":" + row % 500 + "}\n";
+            line = text.getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.assembler.ProductModelAssembler;
+import com.example.shop.model.Product;
+import com.example.shop.representation.CompactJson;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembly plus HAL serialization, with the same ObjectMapper the HAL message converter uses, against the
+ * compact representation written by its own converter's ObjectMapper.
+ * Every invocation starts a fresh simulated request, so per-request link caching is measured honestly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductRepresentationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean precompiledLinks;
+
+    @Param({"100"})
+    public int collectionSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductModelAssembler assembler;
+    private ObjectMapper halObjectMapper;
+    private ObjectMapper compactObjectMapper;
+    private CompactJson compactJson;
+    private Product product;
+    private List<Product> products;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ShopBenchmarkContext.start("shop.hateoas.precompiled-links=" + precompiledLinks);
+        assembler = context.getBean(ProductModelAssembler.class);
+        halObjectMapper = context.getBean(RequestMappingHandlerAdapter.class).getMessageConverters().stream()
+                .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+                .map(converter -> ((MappingJackson2HttpMessageConverter) converter)
+                        .getObjectMappersForType(RepresentationModel.class).get(MediaTypes.HAL_JSON))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow();
+        compactJson = context.getBean(CompactJson.class);
+        compactObjectMapper = compactJson.converter().getObjectMapper();
+
+        products = new ArrayList<>(collectionSize);
+        for (long id = 1; id <= collectionSize; id++) {
+            Product next = new Product("Product " + id, id * 1.5, (int) id);
+            next.setId(id);
+            products.add(next);
+        }
+        product = products.get(0);
+    }
+
+    @Setup(Level.Invocation)
+    public void newRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/products")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] singleProduct() throws Exception {
+        return halObjectMapper.writeValueAsBytes(assembler.toModel(product));
+    }
+
+    @Benchmark
+    public byte[] productCollection() throws Exception {
+        List<EntityModel<Product>> models = products.stream().map(assembler::toModel).toList();
+        return halObjectMapper.writeValueAsBytes(CollectionModel.of(models, Link.of("http://localhost/products")));
+    }
+
+    @Benchmark
+    public byte[] compactProduct() throws Exception {
+        return compactObjectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] compactProductCollection() throws Exception {
+        return compactObjectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] compactProductCollectionFields() throws Exception {
+        CompactJson.Selection selection = compactJson.select(Product.class, "id,stock");
+        return compactObjectMapper.writer(selection.filters()).writeValueAsBytes(products);
+    }
+}
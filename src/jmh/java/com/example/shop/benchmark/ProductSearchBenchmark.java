@@ -0,0 +1,100 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.dto.ProductName;
+import com.example.shop.dto.ProductSearchResult;
+import com.example.shop.search.ProductSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Search latency of {@link ProductSearchIndex} over a synthetic catalog of multi-word names. Queries are
+ * 2-8 character slices of real names, so they range from broad word prefixes to near-unique substrings.
+ * Run in sample mode, so the result carries p99 and p99.9 next to the mean. No Spring context is started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ProductSearchBenchmark {
+
+    private static final int QUERIES = 10_000;
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "ze", "bo", "cu",
+            "da", "fi", "gu", "he", "ji", "po", "ty", "ber", "dan", "fel", "gor", "hin", "jus", "kor", "lum", "mar",
+            "nor", "pel", "quo", "ros", "sel", "tur", "wen", "ax", "ex", "ol", "un", "yst", "ing", "ark", "ent"};
+
+    @Param({"1000000", "3000000"})
+    public int products;
+
+    private ProductSearchIndex index;
+    private String[] names;
+    private String[] queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+        names = new String[products];
+        for (int i = 0; i < products; i++) {
+            names[i] = vocabulary[random.nextInt(vocabulary.length)] + " " + vocabulary[random.nextInt(vocabulary.length)]
+                    + " " + vocabulary[random.nextInt(vocabulary.length)] + " " + (i % 1000);
+        }
+
+        index = new ProductSearchIndex(null, null, 50, 50000);
+        index.load(LongStream.rangeClosed(1, products).mapToObj(id -> new Name(id, names[(int) id - 1])));
+
+        SplittableRandom queryRandom = new SplittableRandom(7);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String name = names[queryRandom.nextInt(products)];
+            int length = 2 + queryRandom.nextInt(7);
+            // two-character queries only match word starts, so take them from one
+            int start = length == 2 ? name.lastIndexOf(' ', queryRandom.nextInt(name.length() - 4)) + 1
+                    : queryRandom.nextInt(name.length() - length + 1);
+            queries[i] = name.substring(start, start + length);
+        }
+    }
+
+    @Benchmark
+    public List<ProductSearchResult> search() {
+        return index.search(queries[ThreadLocalRandom.current().nextInt(QUERIES)], 10);
+    }
+
+    private record Name(Long id, String name) implements ProductName {
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.model.Order;
+import com.example.shop.model.Product;
+import com.example.shop.service.OrderService;
+import com.example.shop.service.ProductService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order throughput per stock strategy with 8 threads ordering either one hot product or spread over many
+ * cold ones. {@code conflicts} counts orders that failed after exhausting the optimistic retries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StockStrategyBenchmark {
+
+    @Param({"optimistic", "pessimistic", "atomic"})
+    public String strategy;
+
+    // 1 is a single hot SKU, 1000 spreads the same load over cold SKUs
+    @Param({"1", "1000"})
+    public int products;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private Long[] productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ShopBenchmarkContext.start("shop.inventory.strategy=" + strategy);
+        orderService = context.getBean(OrderService.class);
+        ProductService productService = context.getBean(ProductService.class);
+        productIds = new Long[products];
+        for (int i = 0; i < products; i++) {
+            productIds[i] = productService.addProduct(new Product("Benchmark product " + i, 1.0, Integer.MAX_VALUE / 2)).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    @Benchmark
+    public Order addOrder(Outcome outcome) {
+        try {
+            return orderService.addOrder(new Order(randomProduct(), 1, null));
+        } catch (OptimisticLockingFailureException e) {
+            outcome.conflicts++;
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Order addAndCancelOrder(Outcome outcome) {
+        try {
+            Order order = orderService.addOrder(new Order(randomProduct(), 1, null));
+            return orderService.cancelOrder(order.getId());
+        } catch (OptimisticLockingFailureException e) {
+            outcome.conflicts++;
+            return null;
+        }
+    }
+
+    private Long randomProduct() {
+        return productIds[ThreadLocalRandom.current().nextInt(productIds.length)];
+    }
+}
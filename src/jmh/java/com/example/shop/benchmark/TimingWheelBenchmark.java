@@ -0,0 +1,61 @@
+package com.example.shop.benchmark;
+
+import com.example.shop.expiry.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady state of the order expiry schedule: every operation creates one order, scheduled a ttl ahead, and
+ * moves a virtual clock on far enough that as many orders expire as are created, so the wheel keeps holding
+ * about {@code pending} timers. The time per operation is the amortized cost of one order's timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimingWheelBenchmark {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    @Param({"1000000", "10000000"})
+    public int pending;
+
+    private TimingWheel wheel;
+    private double millisPerOrder;
+    private double now;
+    private long nextId;
+
+    @Setup
+    public void setUp() {
+        wheel = new TimingWheel(TICK_MILLIS, 0);
+        millisPerOrder = (double) TTL_MILLIS / pending;
+        SplittableRandom random = new SplittableRandom(42);
+        for (nextId = 0; nextId < pending; nextId++) {
+            wheel.schedule(nextId, random.nextLong(1, TTL_MILLIS));
+        }
+    }
+
+    @Benchmark
+    public void createAndExpire(Blackhole blackhole) {
+        now += millisPerOrder;
+        long millis = (long) now;
+        wheel.schedule(nextId++, millis + TTL_MILLIS);
+        wheel.advance(millis, blackhole::consume);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.shop.archive;
+
+import com.example.shop.dto.ArchivedOrderRow;
+import com.example.shop.etag.ResourceVersions;
+import com.example.shop.model.ArchivedOrder;
+import com.example.shop.model.Order;
+import com.example.shop.model.Order.Status;
+import com.example.shop.model.OrderLine;
+import com.example.shop.repository.ArchivedOrderRepository;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.util.Varints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.example.shop.etag.ResourceVersions.Resource.ORDERS;
+
+/**
+ * Cold storage for finished orders. Completed and cancelled orders older than the minimum age are moved out
+ * of the order table in batches, so that it only grows with the orders still in progress. Each archived
+ * order is one row with its lines packed into a byte array: the number of lines, then for every line the
+ * zigzag difference to the previous product id and the quantity, all as unsigned LEB128 varints. A single
+ * line order packs into about five bytes.
+ * <p>
+ * Archived orders keep their id, status, creation time and version, so they read back exactly as before.
+ */
+@Component
+public class OrderArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchive.class);
+    private static final Set<Status> FINISHED = EnumSet.of(Status.COMPLETED, Status.CANCELLED);
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourceVersions resourceVersions;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final int batchSize;
+
+    public OrderArchive(OrderRepository orderRepository, ArchivedOrderRepository archivedOrderRepository,
+                        TransactionTemplate transactionTemplate, ResourceVersions resourceVersions,
+                        @Value("${shop.orders.archive.enabled:true}") boolean enabled,
+                        @Value("${shop.orders.archive.min-age:7d}") Duration minAge,
+                        @Value("${shop.orders.archive.batch-size:500}") int batchSize) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.resourceVersions = resourceVersions;
+        this.enabled = enabled;
+        this.minAge = minAge;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${shop.orders.archive.interval:60000}")
+    public int archive() {
+        if (!enabled) return 0;
+        Instant cutoff = Instant.now().minus(minAge);
+        int archived = 0;
+        int batch;
+        do {
+            batch = archiveBatch(cutoff);
+            archived += batch;
+        } while (batch == batchSize);
+        if (archived > 0) log.atInfo().addKeyValue("archived", archived).log("Archived orders");
+        return archived;
+    }
+
+    /**
+     * Moves one batch in one transaction. The orders are locked while they are copied, and removing them
+     * checks their version, so an order deleted in the meantime fails the batch instead of being archived.
+     */
+    private int archiveBatch(Instant cutoff) {
+        Integer archived = transactionTemplate.execute(status -> {
+            List<Order> orders = orderRepository.findForArchive(FINISHED, cutoff, Limit.of(batchSize));
+            archivedOrderRepository.saveAll(orders.stream().map(OrderArchive::archived).toList());
+            orderRepository.deleteAll(orders);
+            orders.forEach(order -> resourceVersions.changed(ORDERS, order.getId()));
+            return orders.size();
+        });
+        return archived == null ? 0 : archived;
+    }
+
+    public Optional<Order> find(Long id) {
+        return archivedOrderRepository.findById(id).map(OrderArchive::order);
+    }
+
+    public boolean contains(Long id) {
+        return archivedOrderRepository.existsById(id);
+    }
+
+    /**
+     * Removes an archived order, returning what it was.
+     */
+    public Optional<Order> delete(Long id) {
+        return archivedOrderRepository.findById(id).map(archived -> {
+            archivedOrderRepository.delete(archived);
+            return order(archived);
+        });
+    }
+
+    /**
+     * Every archived order, in id order; has to be consumed inside a transaction.
+     */
+    public Stream<Order> streamAll() {
+        return archivedOrderRepository.streamAll().map(OrderArchive::order);
+    }
+
+    public void forEach(Consumer<Order> action) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Order> orders = streamAll()) {
+                orders.forEach(action);
+            }
+        });
+    }
+
+    private static ArchivedOrder archived(Order order) {
+        return new ArchivedOrder(order.getId(), order.getStatus(), order.getCreatedAt(), order.getVersion(), pack(order.getLines()));
+    }
+
+    private static Order order(ArchivedOrder archived) {
+        return order(archived.getId(), archived.getStatus(), archived.getCreatedAt(), archived.getVersion(), archived.getLines());
+    }
+
+    private static Order order(ArchivedOrderRow row) {
+        return order(row.getId(), row.getStatus(), row.getCreatedAt(), row.getVersion(), row.getLines());
+    }
+
+    private static Order order(Long id, Status status, Instant createdAt, long version, byte[] lines) {
+        Order order = new Order(unpack(lines), status);
+        order.setId(id);
+        order.setCreatedAt(createdAt);
+        order.setVersion(version);
+        return order;
+    }
+
+    static byte[] pack(List<OrderLine> lines) {
+        byte[] packed = new byte[Varints.MAX_LENGTH * (1 + lines.size() * 2)];
+        int position = Varints.write(packed, 0, lines.size());
+        long previous = 0;
+        for (OrderLine line : lines) {
+            long productId = line.getProductId();
+            long delta = productId - previous;
+            position = Varints.write(packed, position, Varints.zigzag(delta));
+            position = Varints.write(packed, position, line.getQuantity() == null ? 0 : line.getQuantity());
+            previous = productId;
+        }
+        return Arrays.copyOf(packed, position);
+    }
+
+    static List<OrderLine> unpack(byte[] packed) {
+        int[] position = {0};
+        int count = (int) Varints.read(packed, position);
+        List<OrderLine> lines = new ArrayList<>(count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long productId = previous + Varints.unzigzag(Varints.read(packed, position));
+            lines.add(new OrderLine(productId, (int) Varints.read(packed, position)));
+            previous = productId;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shop.assembler;
+
+import org.springframework.hateoas.Link;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * Links resolved once per request: the collection link is shared as is, and item links only append the id
+ * to the resolved base URI instead of going through a {@code methodOn} proxy for every entity.
+ */
+record LinkTemplate(String baseUri, Link collectionLink) {
+
+    Link self(Long id) {
+        return Link.of(baseUri + "/" + id).withSelfRel();
+    }
+
+    static LinkTemplate forCurrentRequest(String attribute, Supplier<LinkTemplate> resolver) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) return resolver.get();
+
+        LinkTemplate template = (LinkTemplate) requestAttributes.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST);
+        if (template == null) {
+            template = resolver.get();
+            requestAttributes.setAttribute(attribute, template, RequestAttributes.SCOPE_REQUEST);
+        }
+        return template;
+    }
+}
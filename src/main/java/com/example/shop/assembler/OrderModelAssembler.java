@@ -2,6 +2,7 @@ package com.example.shop.assembler;
 
 import com.example.shop.controller.OrderController;
 import com.example.shop.model.Order;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
@@ -11,11 +12,26 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @Component
 public class OrderModelAssembler implements RepresentationModelAssembler<Order, EntityModel<Order>> {
+
+    private static final String LINK_TEMPLATE_ATTRIBUTE = OrderModelAssembler.class.getName() + ".linkTemplate";
+
+    private final boolean precompiledLinks;
+
+    public OrderModelAssembler(@Value("${shop.hateoas.precompiled-links:true}") boolean precompiledLinks) {
+        this.precompiledLinks = precompiledLinks;
+    }
+
     @Override
     public EntityModel<Order> toModel(Order order) {
+        if (precompiledLinks && order.getId() != null) {
+            LinkTemplate links = LinkTemplate.forCurrentRequest(LINK_TEMPLATE_ATTRIBUTE, () -> new LinkTemplate(
+                    linkTo(OrderController.class).toUri().toString(),
+                    linkTo(methodOn(OrderController.class).getAllOrders(null, null, null, null, null, null)).withRel("orders")));
+            return EntityModel.of(order, links.self(order.getId()), links.collectionLink());
+        }
 
         return EntityModel.of(order,
-                linkTo(methodOn(OrderController.class).findOrder(order.getId())).withSelfRel(),
-                linkTo(methodOn(OrderController.class).getAllOrders()).withRel("orders"));
+                linkTo(methodOn(OrderController.class).findOrder(order.getId(), null)).withSelfRel(),
+                linkTo(methodOn(OrderController.class).getAllOrders(null, null, null, null, null, null)).withRel("orders"));
     }
 }
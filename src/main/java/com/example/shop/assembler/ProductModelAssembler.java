@@ -2,6 +2,7 @@ package com.example.shop.assembler;
 
 import com.example.shop.controller.ProductController;
 import com.example.shop.model.Product;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
@@ -11,11 +12,26 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @Component
 public class ProductModelAssembler implements RepresentationModelAssembler<Product, EntityModel<Product>> {
+
+    private static final String LINK_TEMPLATE_ATTRIBUTE = ProductModelAssembler.class.getName() + ".linkTemplate";
+
+    private final boolean precompiledLinks;
+
+    public ProductModelAssembler(@Value("${shop.hateoas.precompiled-links:true}") boolean precompiledLinks) {
+        this.precompiledLinks = precompiledLinks;
+    }
+
     @Override
     public EntityModel<Product> toModel(Product product) {
+        if (precompiledLinks && product.getId() != null) {
+            LinkTemplate links = LinkTemplate.forCurrentRequest(LINK_TEMPLATE_ATTRIBUTE, () -> new LinkTemplate(
+                    linkTo(ProductController.class).toUri().toString(),
+                    linkTo(methodOn(ProductController.class).getAllProducts(null, null, null, null)).withRel("products")));
+            return EntityModel.of(product, links.self(product.getId()), links.collectionLink());
+        }
 
         return EntityModel.of(product,
-                linkTo(methodOn(ProductController.class).findProduct(product.getId())).withSelfRel(),
-                linkTo(methodOn(ProductController.class).getAllProducts()).withRel("products"));
+                linkTo(methodOn(ProductController.class).findProduct(product.getId(), null)).withSelfRel(),
+                linkTo(methodOn(ProductController.class).getAllProducts(null, null, null, null)).withRel("products"));
     }
 }
@@ -0,0 +1,50 @@
+package com.example.shop.cache;
+
+import com.example.shop.model.Product;
+import com.example.shop.util.Transactions;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of product lookups by id. Entries expire after the configured TTL and are
+ * invalidated by every write to the product, including stock changes made by the order path.
+ */
+@Component
+public class ProductCache {
+
+    private final Cache<Long, Product> cache;
+
+    public ProductCache(@Value("${shop.cache.products.max-size:10000}") long maxSize,
+                        @Value("${shop.cache.products.ttl:1m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+        Gauge.builder("shop.cache.products.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+    }
+
+    public Product get(Long id, Function<Long, Product> loader) {
+        return cache.get(id, loader);
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a reader may have cached the pre-commit row in the meantime
+            Transactions.afterCommit(() -> cache.invalidate(id));
+        }
+    }
+}
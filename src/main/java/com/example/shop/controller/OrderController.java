@@ -1,12 +1,25 @@
 package com.example.shop.controller;
 
 import com.example.shop.assembler.OrderModelAssembler;
+import com.example.shop.dto.OrderBatchItemResult;
+import com.example.shop.etag.ETags;
+import com.example.shop.idempotency.IdempotencyStore;
 import com.example.shop.model.Order;
+import com.example.shop.pagination.KeysetPagination;
+import com.example.shop.representation.CompactJson;
+import com.example.shop.service.ExportService;
 import com.example.shop.service.OrderService;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,10 +27,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -25,44 +44,153 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
+
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "status");
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
     OrderService orderService;
 
     OrderModelAssembler assembler;
 
-    OrderController(OrderService orderService, OrderModelAssembler assembler) {
+    KeysetPagination pagination;
+
+    ExportService exportService;
+
+    IdempotencyStore idempotencyStore;
+
+    CompactJson compactJson;
+
+    OrderController(OrderService orderService, OrderModelAssembler assembler, KeysetPagination pagination,
+                    ExportService exportService, IdempotencyStore idempotencyStore, CompactJson compactJson) {
         this.orderService = orderService;
         this.assembler = assembler;
+        this.pagination = pagination;
+        this.exportService = exportService;
+        this.idempotencyStore = idempotencyStore;
+        this.compactJson = compactJson;
     }
 
     @PostMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> addOrder(@RequestBody Order order) {
-        EntityModel<Order> entityModel = assembler.toModel(orderService.addOrder(order));
+    public ResponseEntity<?> addOrder(@RequestBody Order order,
+                                      @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                      Principal principal) {
+        if (idempotencyKey == null) {
+            EntityModel<Order> entityModel = assembler.toModel(orderService.addOrder(order));
+            return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                    .body(entityModel);
+        }
+
+        // keys are only unique per client, so scope them to the caller
+        IdempotencyStore.Result<Order> result = idempotencyStore.execute(principal.getName() + ':' + idempotencyKey,
+                new ArrayList<>(order.getLines()), () -> orderService.addOrder(order));
+        EntityModel<Order> entityModel = assembler.toModel(result.value());
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .header(IDEMPOTENT_REPLAYED, String.valueOf(result.replayed()))
                 .body(entityModel);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
+    public ResponseEntity<List<OrderBatchItemResult>> addOrders(@RequestBody List<Order> orders) {
+        return ResponseEntity.ok(orderService.addOrders(orders));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
-    public EntityModel<Order> findOrder(@PathVariable("id") Long id) {
+    public ResponseEntity<EntityModel<Order>> findOrder(@PathVariable("id") Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String knownTag = orderService.knownOrderTag(id);
+        if (ETags.matches(ifNoneMatch, knownTag, false)) return notModified(knownTag);
+
         Order order = orderService.findOrder(id);
-        return assembler.toModel(order);
+        String etag = orderService.orderTag(order);
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(assembler.toModel(order));
+    }
+
+    @GetMapping(value = "/{id}", produces = CompactJson.MEDIA_TYPE_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<MappingJacksonValue> findOrderCompact(@PathVariable("id") Long id,
+                                                                @RequestParam(value = "fields", required = false) String fields,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CompactJson.Selection selection = compactJson.select(Order.class, fields);
+        String knownTag = selection.tag(orderService.knownOrderTag(id));
+        if (ETags.matches(ifNoneMatch, knownTag, false)) return notModified(knownTag);
+
+        Order order = orderService.findOrder(id);
+        String etag = selection.tag(orderService.orderTag(order));
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(selection.body(order));
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
-    public CollectionModel<EntityModel<Order>> getAllOrders() {
-        List<EntityModel<Order>> orders = orderService.getAllOrders().stream()
+    public ResponseEntity<CollectionModel<EntityModel<Order>>> getAllOrders(@RequestParam(value = "productId", required = false) Long productId,
+                                                                            @RequestParam(value = "status", required = false) Order.Status status,
+                                                                            @RequestParam(value = "after", required = false) Long after,
+                                                                            @RequestParam(value = "size", required = false) Integer size,
+                                                                            @RequestParam(value = "sort", required = false) String sort,
+                                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // read before the page, so a write racing with it can only make the tag older than the content
+        String etag = orderService.ordersTag();
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+
+        Limit limit = pagination.limit(size);
+        Window<Order> page = orderService.getOrderPage(productId, status, after, limit, pagination.sort(sort, SORTABLE_FIELDS));
+        List<EntityModel<Order>> orders = page.stream()
                 .map(assembler::toModel)
                 .toList();
-        return CollectionModel.of(orders, linkTo(methodOn(OrderController.class).getAllOrders()).withSelfRel());
+        CollectionModel<EntityModel<Order>> collectionModel = CollectionModel.of(orders,
+                linkTo(methodOn(OrderController.class).getAllOrders(productId, status, after, size, sort, null)).withSelfRel());
+        if (page.hasNext()) {
+            Long lastId = page.getContent().get(page.size() - 1).getId();
+            collectionModel.add(linkTo(methodOn(OrderController.class).getAllOrders(productId, status, lastId, size, sort, null)).withRel(IanaLinkRelations.NEXT));
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(collectionModel);
+    }
+
+    @GetMapping(produces = CompactJson.MEDIA_TYPE_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<MappingJacksonValue> getAllOrdersCompact(@RequestParam(value = "productId", required = false) Long productId,
+                                                                   @RequestParam(value = "status", required = false) Order.Status status,
+                                                                   @RequestParam(value = "after", required = false) Long after,
+                                                                   @RequestParam(value = "size", required = false) Integer size,
+                                                                   @RequestParam(value = "sort", required = false) String sort,
+                                                                   @RequestParam(value = "fields", required = false) String fields,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CompactJson.Selection selection = compactJson.select(Order.class, fields);
+        String etag = selection.tag(orderService.ordersTag());
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+
+        Limit limit = pagination.limit(size);
+        Window<Order> page = orderService.getOrderPage(productId, status, after, limit, pagination.sort(sort, SORTABLE_FIELDS));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+        if (page.hasNext()) {
+            // a flat array has nowhere to carry the next page, so it goes into a Link header
+            Long lastId = page.getContent().get(page.size() - 1).getId();
+            response.header(HttpHeaders.LINK, linkTo(methodOn(OrderController.class)
+                    .getAllOrdersCompact(productId, status, lastId, size, sort, fields, null)).withRel(IanaLinkRelations.NEXT).expand().toString());
+        }
+        return response.body(selection.body(page.getContent()));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportOrders);
     }
 
     @PutMapping("/{id}/complete")
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> completeOrder(@PathVariable("id") Long id) {
-        EntityModel<Order> entityModel = assembler.toModel(orderService.completeOrder(id));
+    public ResponseEntity<?> completeOrder(@PathVariable("id") Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Order completedOrder = orderService.completeOrder(id, ifMatch);
+        EntityModel<Order> entityModel = assembler.toModel(completedOrder);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .eTag(orderService.orderTag(completedOrder))
                 .body(entityModel);
     }
 
@@ -80,4 +208,8 @@ public class OrderController {
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
                 .body(entityModel);
     }
-}
\ No newline at end of file
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+}
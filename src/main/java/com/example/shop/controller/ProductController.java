@@ -1,24 +1,49 @@
 package com.example.shop.controller;
 
 import com.example.shop.assembler.ProductModelAssembler;
+import com.example.shop.dto.ProductImportResult;
+import com.example.shop.dto.ProductPatchResult;
+import com.example.shop.dto.ProductPriceHistory;
+import com.example.shop.dto.ProductSearchResult;
+import com.example.shop.etag.ETags;
 import com.example.shop.model.Product;
+import com.example.shop.pagination.KeysetPagination;
+import com.example.shop.representation.CompactJson;
+import com.example.shop.service.ExportService;
+import com.example.shop.service.ProductImportService;
 import com.example.shop.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -27,13 +52,29 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RequestMapping("/products")
 public class ProductController {
 
+    private static final Set<String> SORTABLE_FIELDS = Set.of("id", "name", "price", "stock");
+    private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
     ProductService productService;
 
     ProductModelAssembler assembler;
 
-    ProductController(ProductService productService, ProductModelAssembler assembler) {
+    KeysetPagination pagination;
+
+    ExportService exportService;
+
+    CompactJson compactJson;
+
+    ProductImportService productImportService;
+
+    ProductController(ProductService productService, ProductModelAssembler assembler, KeysetPagination pagination,
+                      ExportService exportService, CompactJson compactJson, ProductImportService productImportService) {
         this.productService = productService;
         this.assembler = assembler;
+        this.pagination = pagination;
+        this.exportService = exportService;
+        this.compactJson = compactJson;
+        this.productImportService = productImportService;
     }
 
     @PostMapping
@@ -44,53 +85,168 @@ public class ProductController {
                 .body(entityModel);
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
+    public ProductImportResult importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                              InputStream body) throws IOException {
+        return productImportService.importProducts(body, ProductImportService.Format.of(contentType));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
-    public EntityModel<Product> findProduct(@PathVariable("id") Long id) {
+    public ResponseEntity<EntityModel<Product>> findProduct(@PathVariable("id") Long id,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String knownTag = productService.knownProductTag(id);
+        if (ETags.matches(ifNoneMatch, knownTag, false)) return notModified(knownTag);
+
         Product product = productService.findProduct(id);
-        return assembler.toModel(product);
+        String etag = productService.productTag(product);
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(assembler.toModel(product));
+    }
+
+    @GetMapping(value = "/{id}", produces = CompactJson.MEDIA_TYPE_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<MappingJacksonValue> findProductCompact(@PathVariable("id") Long id,
+                                                                  @RequestParam(value = "fields", required = false) String fields,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CompactJson.Selection selection = compactJson.select(Product.class, fields);
+        String knownTag = selection.tag(productService.knownProductTag(id));
+        if (ETags.matches(ifNoneMatch, knownTag, false)) return notModified(knownTag);
+
+        Product product = productService.findProduct(id);
+        String etag = selection.tag(productService.productTag(product));
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(selection.body(product));
     }
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
-    public CollectionModel<EntityModel<Product>> getAllProducts() {
-        List<EntityModel<Product>> products = productService.getAllProducts().stream()
+    public ResponseEntity<CollectionModel<EntityModel<Product>>> getAllProducts(@RequestParam(value = "after", required = false) Long after,
+                                                                                @RequestParam(value = "size", required = false) Integer size,
+                                                                                @RequestParam(value = "sort", required = false) String sort,
+                                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // read before the page, so a write racing with it can only make the tag older than the content
+        String etag = productService.productsTag();
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+
+        Limit limit = pagination.limit(size);
+        Window<Product> page = productService.getProductPage(after, limit, pagination.sort(sort, SORTABLE_FIELDS));
+        List<EntityModel<Product>> products = page.stream()
                 .map(assembler::toModel)
                 .toList();
-        return CollectionModel.of(products, linkTo(methodOn(ProductController.class).getAllProducts()).withSelfRel());
+        CollectionModel<EntityModel<Product>> collectionModel = CollectionModel.of(products,
+                linkTo(methodOn(ProductController.class).getAllProducts(after, size, sort, null)).withSelfRel());
+        if (page.hasNext()) {
+            Long lastId = page.getContent().get(page.size() - 1).getId();
+            collectionModel.add(linkTo(methodOn(ProductController.class).getAllProducts(lastId, size, sort, null)).withRel(IanaLinkRelations.NEXT));
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(collectionModel);
+    }
+
+    @GetMapping(produces = CompactJson.MEDIA_TYPE_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<MappingJacksonValue> getAllProductsCompact(@RequestParam(value = "after", required = false) Long after,
+                                                                     @RequestParam(value = "size", required = false) Integer size,
+                                                                     @RequestParam(value = "sort", required = false) String sort,
+                                                                     @RequestParam(value = "fields", required = false) String fields,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CompactJson.Selection selection = compactJson.select(Product.class, fields);
+        String etag = selection.tag(productService.productsTag());
+        if (ETags.matches(ifNoneMatch, etag, false)) return notModified(etag);
+
+        Limit limit = pagination.limit(size);
+        Window<Product> page = productService.getProductPage(after, limit, pagination.sort(sort, SORTABLE_FIELDS));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+        if (page.hasNext()) {
+            // a flat array has nowhere to carry the next page, so it goes into a Link header
+            Long lastId = page.getContent().get(page.size() - 1).getId();
+            response.header(HttpHeaders.LINK, linkTo(methodOn(ProductController.class)
+                    .getAllProductsCompact(lastId, size, sort, fields, null)).withRel(IanaLinkRelations.NEXT).expand().toString());
+        }
+        return response.body(selection.body(page.getContent()));
+    }
+
+    @GetMapping("/{id}/prices")
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ProductPriceHistory getPriceHistory(@PathVariable("id") Long id,
+                                               @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                               @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return productService.getPriceHistory(id, from, to);
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public List<ProductSearchResult> searchProducts(@RequestParam(value = "q", required = false) String query,
+                                                    @RequestParam(value = "size", required = false) Integer size) {
+        return productService.searchProducts(query, size);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(exportService::exportProducts);
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> updateProduct(@PathVariable("id") Long id, @RequestBody Product product) {
-        EntityModel<Product> entityModel = assembler.toModel(productService.updateProduct(id, product));
+    public ResponseEntity<?> updateProduct(@PathVariable("id") Long id, @RequestBody Product product,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.updateProduct(id, product, ifMatch);
+        EntityModel<Product> entityModel = assembler.toModel(updatedProduct);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .eTag(productService.productTag(updatedProduct))
                 .body(entityModel);
     }
 
+    @PatchMapping(value = "/{id}", consumes = MERGE_PATCH_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
+    public ResponseEntity<EntityModel<Product>> patchProduct(@PathVariable("id") Long id, @RequestBody JsonNode patch,
+                                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product patchedProduct = productService.patchProduct(id, patch, ifMatch);
+        return ResponseEntity.ok()
+                .eTag(productService.productTag(patchedProduct))
+                .body(assembler.toModel(patchedProduct));
+    }
+
+    @PatchMapping(consumes = MERGE_PATCH_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
+    public List<ProductPatchResult> patchProducts(@RequestBody JsonNode patches) {
+        return productService.patchProducts(patches);
+    }
+
     @PutMapping("/{id}/name")
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> updateProductName(@PathVariable("id") Long id, @RequestParam("newName") String newName) {
-        EntityModel<Product> entityModel = assembler.toModel(productService.updateProductName(id, newName));
+    public ResponseEntity<?> updateProductName(@PathVariable("id") Long id, @RequestParam("newName") String newName,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.updateProductName(id, newName, ifMatch);
+        EntityModel<Product> entityModel = assembler.toModel(updatedProduct);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .eTag(productService.productTag(updatedProduct))
                 .body(entityModel);
     }
 
     @PutMapping("/{id}/price")
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> updateProductPrice(@PathVariable("id") Long id, @RequestParam("newPrice") double newPrice) {
-        EntityModel<Product> entityModel = assembler.toModel(productService.updateProductPrice(id, newPrice));
-
+    public ResponseEntity<?> updateProductPrice(@PathVariable("id") Long id, @RequestParam("newPrice") double newPrice,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.updateProductPrice(id, newPrice, ifMatch);
+        EntityModel<Product> entityModel = assembler.toModel(updatedProduct);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .eTag(productService.productTag(updatedProduct))
                 .body(entityModel);
     }
 
     @PutMapping("/{id}/stock")
     @PreAuthorize("hasAnyRole('ADMIN', 'WRITE')")
-    public ResponseEntity<?> updateProductStock(@PathVariable("id") Long id, @RequestParam("newStock") Integer newStock) {
-        EntityModel<Product> entityModel = assembler.toModel(productService.updateProductStock(id, newStock));
-
+    public ResponseEntity<?> updateProductStock(@PathVariable("id") Long id, @RequestParam("newStock") Integer newStock,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Product updatedProduct = productService.updateProductStock(id, newStock, ifMatch);
+        EntityModel<Product> entityModel = assembler.toModel(updatedProduct);
         return ResponseEntity.created(entityModel.getRequiredLink(IanaLinkRelations.SELF).toUri())
+                .eTag(productService.productTag(updatedProduct))
                 .body(entityModel);
     }
 
@@ -100,4 +256,8 @@ public class ProductController {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.shop.controller;
+
+import com.example.shop.dto.ProductOpenOrders;
+import com.example.shop.dto.ProductSales;
+import com.example.shop.reporting.OpenOrderIndex;
+import com.example.shop.reporting.SalesAggregates;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/reports")
+public class ReportController {
+
+    SalesAggregates salesAggregates;
+    OpenOrderIndex openOrderIndex;
+
+    ReportController(SalesAggregates salesAggregates, OpenOrderIndex openOrderIndex) {
+        this.salesAggregates = salesAggregates;
+        this.openOrderIndex = openOrderIndex;
+    }
+
+    @GetMapping("/sales")
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public List<ProductSales> getSales() {
+        return salesAggregates.getAll();
+    }
+
+    @GetMapping("/sales/{productId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ProductSales getProductSales(@PathVariable("productId") Long productId) {
+        return salesAggregates.get(productId);
+    }
+
+    @PostMapping("/sales/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rebuildSales() {
+        salesAggregates.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/open-orders/{productId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'READ', 'WRITE')")
+    public ProductOpenOrders getOpenOrders(@PathVariable("productId") Long productId) {
+        return new ProductOpenOrders(productId, openOrderIndex.get(productId));
+    }
+}
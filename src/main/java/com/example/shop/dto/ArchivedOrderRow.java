@@ -0,0 +1,17 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.Order;
+
+import java.time.Instant;
+
+public interface ArchivedOrderRow {
+    Long getId();
+
+    Order.Status getStatus();
+
+    Instant getCreatedAt();
+
+    long getVersion();
+
+    byte[] getLines();
+}
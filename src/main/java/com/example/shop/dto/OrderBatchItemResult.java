@@ -0,0 +1,61 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.Order;
+
+public class OrderBatchItemResult {
+    private int index;
+    private Status status;
+    private Order order;
+    private String reason;
+
+    public OrderBatchItemResult(int index, Status status, Order order, String reason) {
+        this.index = index;
+        this.status = status;
+        this.order = order;
+        this.reason = reason;
+    }
+
+    public static OrderBatchItemResult accepted(int index, Order order) {
+        return new OrderBatchItemResult(index, Status.ACCEPTED, order, null);
+    }
+
+    public static OrderBatchItemResult rejected(int index, Order order, String reason) {
+        return new OrderBatchItemResult(index, Status.REJECTED, order, reason);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public enum Status {
+        ACCEPTED, REJECTED
+    }
+}
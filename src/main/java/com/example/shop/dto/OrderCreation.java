@@ -0,0 +1,9 @@
+package com.example.shop.dto;
+
+import java.time.Instant;
+
+public interface OrderCreation {
+    Long getId();
+
+    Instant getCreatedAt();
+}
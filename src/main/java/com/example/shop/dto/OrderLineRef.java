@@ -0,0 +1,7 @@
+package com.example.shop.dto;
+
+public interface OrderLineRef {
+    Long getOrderId();
+
+    Long getProductId();
+}
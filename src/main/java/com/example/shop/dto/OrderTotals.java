@@ -0,0 +1,13 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.Order;
+
+public interface OrderTotals {
+    Long getProductId();
+
+    Order.Status getStatus();
+
+    long getOrders();
+
+    long getQuantity();
+}
@@ -0,0 +1,11 @@
+package com.example.shop.dto;
+
+import java.time.Instant;
+
+public interface PriceChangeRow {
+    Long getProductId();
+
+    Instant getChangedAt();
+
+    double getPrice();
+}
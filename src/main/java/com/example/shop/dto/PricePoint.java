@@ -0,0 +1,29 @@
+package com.example.shop.dto;
+
+import java.time.Instant;
+
+public class PricePoint {
+    private Instant at;
+    private double price;
+
+    public PricePoint(Instant at, double price) {
+        this.at = at;
+        this.price = price;
+    }
+
+    public Instant getAt() {
+        return at;
+    }
+
+    public void setAt(Instant at) {
+        this.at = at;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+}
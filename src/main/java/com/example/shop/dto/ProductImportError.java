@@ -0,0 +1,27 @@
+package com.example.shop.dto;
+
+public class ProductImportError {
+    private long line;
+    private String reason;
+
+    public ProductImportError(long line, String reason) {
+        this.line = line;
+        this.reason = reason;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
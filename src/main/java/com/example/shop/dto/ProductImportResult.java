@@ -0,0 +1,34 @@
+package com.example.shop.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportResult {
+    private long imported;
+    private long rejected;
+    private List<ProductImportError> errors = new ArrayList<>();
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<ProductImportError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ProductImportError> errors) {
+        this.errors = errors;
+    }
+}
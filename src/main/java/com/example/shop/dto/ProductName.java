@@ -0,0 +1,7 @@
+package com.example.shop.dto;
+
+public interface ProductName {
+    Long getId();
+
+    String getName();
+}
@@ -0,0 +1,27 @@
+package com.example.shop.dto;
+
+public class ProductOpenOrders {
+    private Long productId;
+    private long[] orderIds;
+
+    public ProductOpenOrders(Long productId, long[] orderIds) {
+        this.productId = productId;
+        this.orderIds = orderIds;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public long[] getOrderIds() {
+        return orderIds;
+    }
+
+    public void setOrderIds(long[] orderIds) {
+        this.orderIds = orderIds;
+    }
+}
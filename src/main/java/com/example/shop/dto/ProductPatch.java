@@ -0,0 +1,32 @@
+package com.example.shop.dto;
+
+// fields of a merge patch; null means the patch leaves the field as it is
+public class ProductPatch {
+    private String name;
+    private Double price;
+    private Integer stock;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.Product;
+
+public class ProductPatchResult {
+    private Long productId;
+    private Status status;
+    private Product product;
+    private String reason;
+
+    public ProductPatchResult(Long productId, Status status, Product product, String reason) {
+        this.productId = productId;
+        this.status = status;
+        this.product = product;
+        this.reason = reason;
+    }
+
+    public static ProductPatchResult accepted(Product product) {
+        return new ProductPatchResult(product.getId(), Status.ACCEPTED, product, null);
+    }
+
+    public static ProductPatchResult rejected(Long productId, String reason) {
+        return new ProductPatchResult(productId, Status.REJECTED, null, reason);
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    public enum Status {
+        ACCEPTED, REJECTED
+    }
+}
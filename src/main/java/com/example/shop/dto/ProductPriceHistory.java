@@ -0,0 +1,29 @@
+package com.example.shop.dto;
+
+import java.util.List;
+
+public class ProductPriceHistory {
+    private Long productId;
+    private List<PricePoint> prices;
+
+    public ProductPriceHistory(Long productId, List<PricePoint> prices) {
+        this.productId = productId;
+        this.prices = prices;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public List<PricePoint> getPrices() {
+        return prices;
+    }
+
+    public void setPrices(List<PricePoint> prices) {
+        this.prices = prices;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.shop.dto;
+
+import com.example.shop.model.Order;
+
+import java.util.Map;
+
+public class ProductSales {
+    private Long productId;
+    private Map<Order.Status, Totals> statuses;
+
+    public ProductSales(Long productId, Map<Order.Status, Totals> statuses) {
+        this.productId = productId;
+        this.statuses = statuses;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Map<Order.Status, Totals> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Map<Order.Status, Totals> statuses) {
+        this.statuses = statuses;
+    }
+
+    public static class Totals {
+        private long orders;
+        private long quantity;
+
+        public Totals(long orders, long quantity) {
+            this.orders = orders;
+            this.quantity = quantity;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public void setOrders(long orders) {
+            this.orders = orders;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(long quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
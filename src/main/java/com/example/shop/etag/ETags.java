@@ -0,0 +1,29 @@
+package com.example.shop.etag;
+
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Whether an If-Match or If-None-Match header lists the tag. If-Match needs a strong comparison, so
+     * weak tags in it never match; If-None-Match compares weakly.
+     */
+    public static boolean matches(String header, String etag, boolean strong) {
+        if (header == null || etag == null) return false;
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value)) return true;
+            if (value.startsWith("W/")) {
+                if (strong) continue;
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.shop.etag;
+
+import com.example.shop.util.Transactions;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validators for conditional requests. Each resource type has a generation counter that every committed
+ * write bumps; it is the ETag of the collection. The ETag last served for an entity is remembered, so a
+ * matching If-None-Match can be answered without loading the entity. A tag is only kept if no write
+ * happened between capturing the generation and remembering it, so a slow reader cannot put back a tag
+ * that a concurrent write has just evicted.
+ */
+@Component
+public class ResourceVersions {
+
+    public enum Resource {
+        PRODUCTS, ORDERS
+    }
+
+    private final Map<Resource, Cache<Long, String>> tags = new EnumMap<>(Resource.class);
+    private final Map<Resource, AtomicLong> generations = new EnumMap<>(Resource.class);
+
+    public ResourceVersions(@Value("${shop.etag.max-size:100000}") long maxSize) {
+        // collection tags handed out before a restart must not match the new counters
+        long start = System.currentTimeMillis();
+        for (Resource resource : Resource.values()) {
+            tags.put(resource, Caffeine.newBuilder().maximumSize(maxSize).build());
+            generations.put(resource, new AtomicLong(start));
+        }
+    }
+
+    public long generation(Resource resource) {
+        return generations.get(resource).get();
+    }
+
+    public String collectionTag(Resource resource) {
+        return ETags.of(generation(resource));
+    }
+
+    public String known(Resource resource, Long id) {
+        return tags.get(resource).getIfPresent(id);
+    }
+
+    public void remember(Resource resource, Long id, String etag, long generation) {
+        Cache<Long, String> cache = tags.get(resource);
+        cache.put(id, etag);
+        if (generation(resource) != generation) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void changed(Resource resource, Long id) {
+        tags.get(resource).invalidate(id);
+        Transactions.afterCommit(() -> bump(resource, id));
+    }
+
+    /**
+     * For writes that only add entities: no tag can have been served for them yet, only the collection changed.
+     */
+    public void added(Resource resource) {
+        Transactions.afterCommit(() -> generations.get(resource).incrementAndGet());
+    }
+
+    private void bump(Resource resource, Long id) {
+        generations.get(resource).incrementAndGet();
+        tags.get(resource).invalidate(id);
+    }
+}
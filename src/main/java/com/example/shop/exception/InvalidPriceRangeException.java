@@ -0,0 +1,8 @@
+package com.example.shop.exception;
+
+public class InvalidPriceRangeException extends RuntimeException {
+
+    public InvalidPriceRangeException(String message) {
+        super(message);
+    }
+}
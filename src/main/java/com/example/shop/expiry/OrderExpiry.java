@@ -0,0 +1,108 @@
+package com.example.shop.expiry;
+
+import com.example.shop.dto.OrderCreation;
+import com.example.shop.model.Order;
+import com.example.shop.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Deadlines of the orders in progress, kept in a timing wheel instead of being looked for in the order
+ * table. Every order is scheduled once, when it is created; completing or cancelling it leaves the timer in
+ * place, and whoever expires the due orders skips those no longer in progress. The schedule is rebuilt from
+ * the creation times of the orders in progress on startup.
+ */
+@Component
+public class OrderExpiry {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderExpiry.class);
+
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long retryDelayMillis;
+    private final TimingWheel wheel;
+
+    public OrderExpiry(OrderRepository orderRepository, TransactionTemplate transactionTemplate,
+                       @Value("${shop.orders.expiry.enabled:true}") boolean enabled,
+                       @Value("${shop.orders.expiry.ttl:30m}") Duration ttl,
+                       @Value("${shop.orders.expiry.tick:1s}") Duration tick,
+                       @Value("${shop.orders.expiry.retry-delay:1m}") Duration retryDelay) {
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        this.retryDelayMillis = retryDelay.toMillis();
+        this.wheel = new TimingWheel(tick.toMillis(), System.currentTimeMillis());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<OrderCreation> orders = orderRepository.streamCreationByStatus(Order.Status.IN_PROGRESS)) {
+                long now = System.currentTimeMillis();
+                synchronized (wheel) {
+                    wheel.clear();
+                    orders.forEach(order -> wheel.schedule(order.getId(), deadline(order.getCreatedAt(), now)));
+                }
+            }
+        });
+        log.atInfo().addKeyValue("orders", pending()).log("Order expiry rebuilt");
+    }
+
+    public void schedule(Order order) {
+        if (!enabled) return;
+        long deadline = deadline(order.getCreatedAt(), System.currentTimeMillis());
+        synchronized (wheel) {
+            wheel.schedule(order.getId(), deadline);
+        }
+    }
+
+    /**
+     * Schedules an order that was due but could not be expired once more, after the retry delay.
+     */
+    public void retry(long orderId) {
+        long deadline = System.currentTimeMillis() + retryDelayMillis;
+        synchronized (wheel) {
+            wheel.schedule(orderId, deadline);
+        }
+    }
+
+    /**
+     * Ids of the orders whose time ran out by the given time, each returned once.
+     */
+    public long[] due(long nowMillis) {
+        LongStream.Builder due = LongStream.builder();
+        synchronized (wheel) {
+            wheel.advance(nowMillis, due);
+        }
+        return due.build().toArray();
+    }
+
+    public int pending() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    // orders from before creation times were recorded get a full ttl from now
+    private long deadline(Instant createdAt, long now) {
+        return (createdAt == null ? now : createdAt.toEpochMilli()) + ttlMillis;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.shop.expiry;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of long ids. Level 0 has one slot per tick and every level above has slots
+ * {@value #SLOTS} times as wide. A timer is put in the lowest level whose span reaches its deadline and moves
+ * down a level whenever the wheel reaches its slot, so scheduling is O(1) and a tick only touches the timers
+ * that are due or moving down. There is no cancelling; callers check whether a due id still needs anything.
+ * <p>
+ * Timers live in parallel primitive arrays, each slot a chain of indexes into them, at about 20 bytes a
+ * timer. Not thread-safe.
+ */
+public class TimingWheel {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+    private static final int NONE = -1;
+
+    private final long tickMillis;
+    private final int[][] heads = new int[LEVELS][SLOTS];
+    private long[] ids;
+    private long[] deadlines;
+    private int[] next;
+    private int allocated;
+    private int free = NONE;
+    private int size;
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+        clear();
+    }
+
+    /**
+     * Schedules an id for the first tick at or after the deadline; a deadline already passed is due on the
+     * next tick.
+     */
+    public void schedule(long id, long deadlineMillis) {
+        int node = allocate();
+        ids[node] = id;
+        deadlines[node] = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        insert(node);
+        size++;
+    }
+
+    /**
+     * Moves the wheel up to the given time, handing every id that has become due to the consumer.
+     */
+    public void advance(long nowMillis, LongConsumer due) {
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        if (size == 0 && target > currentTick) {
+            currentTick = target;
+            return;
+        }
+        while (currentTick < target) {
+            currentTick++;
+            int aligned = 0;
+            while (aligned + 1 < LEVELS && (currentTick & ((1L << (BITS * (aligned + 1))) - 1)) == 0) aligned++;
+            for (int level = aligned; level > 0; level--) {
+                cascade(level, slot(currentTick, level));
+            }
+            int node = take(0, slot(currentTick, 0));
+            while (node != NONE) {
+                int following = next[node];
+                due.accept(ids[node]);
+                release(node);
+                node = following;
+            }
+            if (size == 0) {
+                currentTick = target;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int[] level : heads) {
+            Arrays.fill(level, NONE);
+        }
+        ids = new long[SLOTS];
+        deadlines = new long[SLOTS];
+        next = new int[SLOTS];
+        allocated = 0;
+        free = NONE;
+        size = 0;
+    }
+
+    private void insert(int node) {
+        // past the top level's span a timer goes round the top level again until it is in reach
+        long tick = Math.min(deadlines[node], currentTick + SPAN - 1);
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= 1L << (BITS * (level + 1))) level++;
+        int slot = slot(tick, level);
+        next[node] = heads[level][slot];
+        heads[level][slot] = node;
+    }
+
+    private void cascade(int level, int slot) {
+        int node = take(level, slot);
+        while (node != NONE) {
+            int following = next[node];
+            insert(node);
+            node = following;
+        }
+    }
+
+    private int take(int level, int slot) {
+        int node = heads[level][slot];
+        heads[level][slot] = NONE;
+        return node;
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) ((tick >>> (BITS * level)) & MASK);
+    }
+
+    private int allocate() {
+        if (free != NONE) {
+            int node = free;
+            free = next[node];
+            return node;
+        }
+        if (allocated == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        return allocated++;
+    }
+
+    private void release(int node) {
+        next[node] = free;
+        free = node;
+        size--;
+    }
+}
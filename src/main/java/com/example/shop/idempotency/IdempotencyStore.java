@@ -0,0 +1,92 @@
+package com.example.shop.idempotency;
+
+import com.example.shop.exception.IdempotencyKeyInProgressException;
+import com.example.shop.exception.IdempotencyKeyMismatchException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Results of requests carrying an idempotency key, in flight or completed. The first request with a key
+ * runs the action; duplicates get its result, waiting for it if it is still running. Failed executions are
+ * forgotten so that a retry can run again, and entries expire after the configured TTL.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final Cache<String, Entry> entries;
+    private final Duration waitTimeout;
+
+    public IdempotencyStore(@Value("${shop.idempotency.max-size:100000}") long maxSize,
+                            @Value("${shop.idempotency.ttl:10m}") Duration ttl,
+                            @Value("${shop.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                            MeterRegistry meterRegistry) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.waitTimeout = waitTimeout;
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "idempotency");
+    }
+
+    /**
+     * Runs {@code action} once per key. {@code fingerprint} identifies the request payload; reusing a key
+     * with a different fingerprint is rejected.
+     */
+    public <T> Result<T> execute(String key, Object fingerprint, Supplier<T> action) {
+        Entry entry = new Entry(fingerprint, new CompletableFuture<>());
+        Entry existing = entries.asMap().putIfAbsent(key, entry);
+        if (existing != null) {
+            if (!Objects.equals(existing.fingerprint(), fingerprint)) throw new IdempotencyKeyMismatchException(key);
+            return new Result<>(await(key, existing), true);
+        }
+
+        try {
+            T value = action.get();
+            entry.result().complete(value);
+            return new Result<>(value, false);
+        } catch (Throwable e) {
+            // an Error too, or duplicates would wait on a future that never completes until the entry expires
+            entries.asMap().remove(key, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(String key, Entry entry) {
+        try {
+            return (T) entry.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        }
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    private record Entry(Object fingerprint, CompletableFuture<Object> result) {
+    }
+
+    public record Result<T>(T value, boolean replayed) {
+    }
+}
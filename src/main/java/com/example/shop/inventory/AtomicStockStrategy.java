@@ -0,0 +1,67 @@
+package com.example.shop.inventory;
+
+import com.example.shop.cache.ProductCache;
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * One conditional {@code UPDATE} per stock change; the stock check and the write happen in the same
+ * statement, so there is nothing to retry and no lock held across round trips. Multi-product reservations
+ * run their updates in one transaction, which keeps each row locked until the last product is taken.
+ */
+public class AtomicStockStrategy implements StockStrategy {
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCache productCache;
+
+    public AtomicStockStrategy(ProductRepository productRepository, TransactionTemplate transactionTemplate,
+                               ProductCache productCache) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.productCache = productCache;
+    }
+
+    @Override
+    public boolean reserve(Long productId, int quantity) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (productRepository.decrementStock(productId, quantity) == 1) {
+                productCache.invalidate(productId);
+                return true;
+            }
+            if (!productRepository.existsById(productId)) throw new ProductNotFoundException(productId);
+            return false;
+        }));
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (productRepository.incrementStock(productId, quantity) == 0) throw new ProductNotFoundException(productId);
+            productCache.invalidate(productId);
+        });
+    }
+
+    @Override
+    public boolean reserveAll(SortedMap<Long, Integer> quantities) {
+        // the single-product calls join this transaction, so a shortfall rolls back the products already taken
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                if (!reserve(line.getKey(), line.getValue())) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            return true;
+        }));
+    }
+
+    @Override
+    public void releaseAll(SortedMap<Long, Integer> quantities) {
+        transactionTemplate.executeWithoutResult(status -> quantities.forEach(this::release));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.shop.inventory;
+
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.util.Transactions;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional in-memory owner of product stock. Reservations are CAS operations on a per-product
+ * {@link StripedStock}, which spreads a hot product over several cells, and dirty stock is written back to
+ * the product table in batches.
+ */
+@Component
+public class InventoryLedger implements StockStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Map<Long, StripedStock> counters = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public InventoryLedger(ProductRepository productRepository,
+                           @Value("${shop.inventory.ledger.enabled:false}") boolean enabled,
+                           @Value("${shop.inventory.ledger.batch-size:500}") int batchSize) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) return;
+        counters.clear();
+        dirty.clear();
+        for (Product product : productRepository.findAll()) {
+            counters.put(product.getId(), new StripedStock(product.getStock()));
+        }
+        log.info("Inventory ledger rebuilt with {} products", counters.size());
+    }
+
+    @Override
+    public boolean reserve(Long productId, int quantity) {
+        if (!counter(productId).reserve(quantity)) return false;
+        dirty.add(productId);
+        return true;
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        counter(productId).release(quantity);
+        dirty.add(productId);
+    }
+
+    public int available(Long productId) {
+        return counter(productId).available();
+    }
+
+    /**
+     * Starts counting a product just inserted with the stock it was stored with. The row already holds that
+     * stock, so it is not marked dirty.
+     */
+    public void track(Long productId, Integer stock) {
+        if (!enabled) return;
+        counters.computeIfAbsent(productId, id -> new StripedStock(0)).set(stock);
+    }
+
+    /**
+     * Moves the stock of an updated product from {@code expected}, the ledger stock the update read, to
+     * {@code stock}, keeping reservations and releases made since then. Call it inside the transaction that
+     * writes the row: the change is undone if that transaction rolls back, and a flush racing it either
+     * writes the new stock or fails on the row version and is retried.
+     */
+    public void set(Long productId, Integer expected, Integer stock) {
+        if (!enabled || stock == null) return;
+        int change = stock - (expected == null ? 0 : expected);
+        adjust(productId, change);
+        Transactions.afterRollback(() -> adjust(productId, -change));
+    }
+
+    public void remove(Long productId) {
+        if (!enabled) return;
+        counters.remove(productId);
+        dirty.remove(productId);
+    }
+
+    /**
+     * Stock of the product as the ledger counts it, or as loaded when the ledger is off. Unlike
+     * {@link #overlay(Product)} it leaves a managed product untouched.
+     */
+    public Integer stock(Product product) {
+        return enabled ? Integer.valueOf(available(product.getId())) : product.getStock();
+    }
+
+    public Product overlay(Product product) {
+        if (!enabled || product == null) return product;
+        StripedStock counter = counters.get(product.getId());
+        if (counter != null) {
+            product.setStock(counter.available());
+        }
+        return product;
+    }
+
+    @Scheduled(fixedDelayString = "${shop.inventory.ledger.flush-interval:1000}")
+    @PreDestroy
+    public void flush() {
+        if (!enabled || dirty.isEmpty()) return;
+        List<Long> batch = new ArrayList<>(batchSize);
+        Iterator<Long> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+            if (batch.size() == batchSize) {
+                writeBack(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBack(batch);
+        }
+    }
+
+    private void writeBack(List<Long> productIds) {
+        try {
+            List<Product> products = productRepository.findAllById(productIds);
+            for (Product product : products) {
+                overlay(product);
+            }
+            productRepository.saveAll(products);
+            log.debug("Inventory ledger flushed stock of {} products", products.size());
+        } catch (RuntimeException e) {
+            log.error("Inventory ledger flush failed, retrying on next cycle: {}", e.getMessage());
+            dirty.addAll(productIds);
+        }
+    }
+
+    private void adjust(Long productId, int change) {
+        counter(productId).release(change);
+        dirty.add(productId);
+    }
+
+    private StripedStock counter(Long productId) {
+        return counters.computeIfAbsent(productId, id -> new StripedStock(productRepository.findById(id)
+                .orElseThrow(() -> new ProductNotFoundException(id)).getStock()));
+    }
+}
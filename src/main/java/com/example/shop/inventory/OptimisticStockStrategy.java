@@ -0,0 +1,100 @@
+package com.example.shop.inventory;
+
+import com.example.shop.cache.ProductCache;
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-modify-write guarded by the product's {@code @Version}. A conflicting update is retried in a fresh
+ * transaction up to {@code maxAttempts} times before the conflict is rethrown. Multi-product changes are
+ * checked and written in one transaction and retried as a whole.
+ */
+public class OptimisticStockStrategy implements StockStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticStockStrategy.class);
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCache productCache;
+    private final int maxAttempts;
+
+    public OptimisticStockStrategy(ProductRepository productRepository, TransactionTemplate transactionTemplate,
+                                   ProductCache productCache, int maxAttempts) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.productCache = productCache;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public boolean reserve(Long productId, int quantity) {
+        return adjust(productId, -quantity);
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        adjust(productId, quantity);
+    }
+
+    private boolean adjust(Long productId, int delta) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    Product product = productRepository.findById(productId).orElseThrow(() -> new ProductNotFoundException(productId));
+                    if (product.getStock() + delta < 0) return false;
+                    product.setStock(product.getStock() + delta);
+                    productCache.invalidate(productId);
+                    return true;
+                }));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) throw e;
+                log.atDebug().addKeyValue("productId", productId).addKeyValue("attempt", attempt).log("Stock update conflict, retrying");
+            }
+        }
+    }
+
+    @Override
+    public boolean reserveAll(SortedMap<Long, Integer> quantities) {
+        return adjustAll(quantities, -1);
+    }
+
+    @Override
+    public void releaseAll(SortedMap<Long, Integer> quantities) {
+        adjustAll(quantities, 1);
+    }
+
+    private boolean adjustAll(SortedMap<Long, Integer> quantities, int sign) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                            .collect(Collectors.toMap(Product::getId, Function.identity()));
+                    for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                        Product product = products.get(line.getKey());
+                        if (product == null) throw new ProductNotFoundException(line.getKey());
+                        if (product.getStock() + sign * line.getValue() < 0) return false;
+                    }
+                    for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                        Product product = products.get(line.getKey());
+                        product.setStock(product.getStock() + sign * line.getValue());
+                        productCache.invalidate(product.getId());
+                    }
+                    return true;
+                }));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) throw e;
+                log.atDebug().addKeyValue("productIds", quantities.keySet()).addKeyValue("attempt", attempt).log("Stock update conflict, retrying");
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.shop.inventory;
+
+import com.example.shop.cache.ProductCache;
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-modify-write under a {@code SELECT ... FOR UPDATE} row lock, so concurrent orders for the same
+ * product queue up on the database instead of conflicting. Multi-product changes lock all their rows with
+ * one query ordered by id, so two orders sharing products queue up in the same order instead of deadlocking.
+ */
+public class PessimisticStockStrategy implements StockStrategy {
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCache productCache;
+
+    public PessimisticStockStrategy(ProductRepository productRepository, TransactionTemplate transactionTemplate,
+                                    ProductCache productCache) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.productCache = productCache;
+    }
+
+    @Override
+    public boolean reserve(Long productId, int quantity) {
+        return adjust(productId, -quantity);
+    }
+
+    @Override
+    public void release(Long productId, int quantity) {
+        adjust(productId, quantity);
+    }
+
+    private boolean adjust(Long productId, int delta) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Product product = productRepository.findByIdForUpdate(productId).orElseThrow(() -> new ProductNotFoundException(productId));
+            if (product.getStock() + delta < 0) return false;
+            product.setStock(product.getStock() + delta);
+            productCache.invalidate(productId);
+            return true;
+        }));
+    }
+
+    @Override
+    public boolean reserveAll(SortedMap<Long, Integer> quantities) {
+        return adjustAll(quantities, -1);
+    }
+
+    @Override
+    public void releaseAll(SortedMap<Long, Integer> quantities) {
+        adjustAll(quantities, 1);
+    }
+
+    private boolean adjustAll(SortedMap<Long, Integer> quantities, int sign) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Map<Long, Product> products = productRepository.findAllByIdForUpdate(quantities.keySet()).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                if (product == null) throw new ProductNotFoundException(line.getKey());
+                if (product.getStock() + sign * line.getValue() < 0) return false;
+            }
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                product.setStock(product.getStock() + sign * line.getValue());
+                productCache.invalidate(product.getId());
+            }
+            return true;
+        }));
+    }
+}
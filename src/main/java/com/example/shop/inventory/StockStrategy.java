@@ -0,0 +1,42 @@
+package com.example.shop.inventory;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * How a single order takes stock from and returns stock to a product. Database-backed strategies run in
+ * their own transaction; all of them throw {@link com.example.shop.exception.ProductNotFoundException}
+ * for unknown products.
+ */
+public interface StockStrategy {
+
+    boolean reserve(Long productId, int quantity);
+
+    void release(Long productId, int quantity);
+
+    /**
+     * Reserves the quantity of every product, or of none of them. Products are taken in ascending id order so
+     * that two orders sharing products always lock them in the same order. This default reserves one product
+     * at a time and gives back what it already took when a later product falls short.
+     */
+    default boolean reserveAll(SortedMap<Long, Integer> quantities) {
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            boolean reserved;
+            try {
+                reserved = reserve(line.getKey(), line.getValue());
+            } catch (RuntimeException e) {
+                quantities.headMap(line.getKey()).forEach(this::release);
+                throw e;
+            }
+            if (!reserved) {
+                quantities.headMap(line.getKey()).forEach(this::release);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    default void releaseAll(SortedMap<Long, Integer> quantities) {
+        quantities.forEach(this::release);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.shop.inventory;
+
+import com.example.shop.cache.ProductCache;
+import com.example.shop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class StockStrategyConfig {
+
+    // primary over the InventoryLedger, which is also a StockStrategy but only used when enabled
+    @Bean
+    @Primary
+    StockStrategy stockStrategy(@Value("${shop.inventory.strategy:atomic}") String strategy,
+                                @Value("${shop.inventory.optimistic.max-attempts:5}") int maxAttempts,
+                                ProductRepository productRepository, TransactionTemplate transactionTemplate,
+                                ProductCache productCache) {
+        return switch (strategy) {
+            case "optimistic" -> new OptimisticStockStrategy(productRepository, transactionTemplate, productCache, maxAttempts);
+            case "pessimistic" -> new PessimisticStockStrategy(productRepository, transactionTemplate, productCache);
+            case "atomic" -> new AtomicStockStrategy(productRepository, transactionTemplate, productCache);
+            default -> throw new IllegalArgumentException("Unknown shop.inventory.strategy '" + strategy
+                    + "', expected optimistic, pessimistic or atomic");
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.shop.inventory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Available stock of one product. It starts as a single CAS counter; the first time two reservations collide
+ * on it, the stock is spread over cells on separate cache lines, the way {@link java.util.concurrent.atomic.LongAdder}
+ * stripes a contended sum, so concurrent orders for a hot product mostly CAS different words. A reservation
+ * takes from its thread's cell and then from the others. When no single cell holds enough, all cells are
+ * drained under the lock and the remainder is spread again, so stock split across cells is never refused
+ * and the total never goes below zero.
+ */
+final class StripedStock {
+
+    static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+    // 16 ints are 64 bytes, so neighbouring cells do not share a cache line
+    private static final int PADDING = 16;
+
+    private final AtomicInteger base;
+    private volatile AtomicIntegerArray cells;
+    // odd while the cells are drained, so available() does not sum a half-moved total
+    private volatile int rebalances;
+
+    StripedStock(int stock) {
+        base = new AtomicInteger(stock);
+    }
+
+    boolean reserve(int quantity) {
+        if (cells == null) {
+            int current = base.get();
+            if (current >= quantity && base.compareAndSet(current, current - quantity)) return true;
+            // cells are published before base is drained into them, so a short base with no cells is final
+            if (current < quantity && cells == null) return false;
+            stripe();
+        }
+        AtomicIntegerArray cells = this.cells;
+        int home = home();
+        for (int i = 0; i < STRIPES; i++) {
+            if (take(cells, ((home + i) & (STRIPES - 1)) * PADDING, quantity)) return true;
+        }
+        return rebalance(quantity);
+    }
+
+    void release(int quantity) {
+        AtomicIntegerArray cells = this.cells;
+        if (cells == null) {
+            base.addAndGet(quantity);
+        } else {
+            cells.addAndGet(home() * PADDING, quantity);
+        }
+    }
+
+    int available() {
+        while (true) {
+            int before = rebalances;
+            if ((before & 1) == 0) {
+                long total = sum();
+                if (rebalances == before) return (int) total;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    synchronized void set(int stock) {
+        rebalances++;
+        drain();
+        spread(stock);
+        rebalances++;
+    }
+
+    synchronized void stripe() {
+        if (cells != null) return;
+        rebalances++;
+        cells = new AtomicIntegerArray(STRIPES * PADDING);
+        spread(base.getAndSet(0));
+        rebalances++;
+    }
+
+    private synchronized boolean rebalance(int quantity) {
+        rebalances++;
+        long total = drain();
+        boolean reserved = total >= quantity;
+        spread(reserved ? total - quantity : total);
+        rebalances++;
+        return reserved;
+    }
+
+    private static boolean take(AtomicIntegerArray cells, int index, int quantity) {
+        int current;
+        do {
+            current = cells.get(index);
+            if (current < quantity) return false;
+        } while (!cells.compareAndSet(index, current, current - quantity));
+        return true;
+    }
+
+    private long sum() {
+        long total = base.get();
+        AtomicIntegerArray cells = this.cells;
+        if (cells != null) {
+            for (int i = 0; i < STRIPES; i++) total += cells.get(i * PADDING);
+        }
+        return total;
+    }
+
+    private long drain() {
+        long total = base.getAndSet(0);
+        AtomicIntegerArray cells = this.cells;
+        if (cells != null) {
+            for (int i = 0; i < STRIPES; i++) total += cells.getAndSet(i * PADDING, 0);
+        }
+        return total;
+    }
+
+    private void spread(long total) {
+        AtomicIntegerArray cells = this.cells;
+        if (cells == null) {
+            base.addAndGet((int) total);
+            return;
+        }
+        long share = total / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            cells.addAndGet(i * PADDING, (int) (i == 0 ? total - share * (STRIPES - 1) : share));
+        }
+    }
+
+    private static int home() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (id ^ (id >>> 32)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.shop.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Iterator;
+
+@Configuration
+@EnableConfigurationProperties(SamplingProperties.class)
+public class LoggingConfig implements WebMvcConfigurer {
+
+    private final SamplingProperties samplingProperties;
+
+    public LoggingConfig(SamplingProperties samplingProperties, MeterRegistry meterRegistry) {
+        this.samplingProperties = samplingProperties;
+        bindMetrics(meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SamplingInterceptor(samplingProperties));
+    }
+
+    private static void bindMetrics(MeterRegistry meterRegistry) {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (!(loggerFactory instanceof LoggerContext loggerContext)) return;
+
+        Iterator<Appender<ILoggingEvent>> appenders = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+        while (appenders.hasNext()) {
+            if (appenders.next() instanceof RingBufferAppender ringBuffer) {
+                FunctionCounter.builder("shop.logging.events", ringBuffer, RingBufferAppender::getQueuedCount)
+                        .tag("appender", ringBuffer.getName()).tag("outcome", "queued")
+                        .register(meterRegistry);
+                FunctionCounter.builder("shop.logging.events", ringBuffer, RingBufferAppender::getDroppedCount)
+                        .tag("appender", ringBuffer.getName()).tag("outcome", "dropped")
+                        .register(meterRegistry);
+                Gauge.builder("shop.logging.queue.size", ringBuffer, RingBufferAppender::getQueueSize)
+                        .tag("appender", ringBuffer.getName())
+                        .register(meterRegistry);
+            }
+        }
+        for (TurboFilter turboFilter : loggerContext.getTurboFilterList()) {
+            if (turboFilter instanceof SamplingTurboFilter sampling) {
+                FunctionCounter.builder("shop.logging.events", sampling, SamplingTurboFilter::getSampledOutCount)
+                        .tag("appender", "all").tag("outcome", "sampled-out")
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
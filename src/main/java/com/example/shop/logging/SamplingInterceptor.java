@@ -0,0 +1,57 @@
+package com.example.shop.logging;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides once per request whether its INFO/DEBUG events are logged, using the rate configured for the
+ * handling endpoint ({@code ControllerName.methodName}).
+ */
+public class SamplingInterceptor implements AsyncHandlerInterceptor {
+
+    static final String ENDPOINT_KEY = "endpoint";
+    static final String SAMPLED_KEY = "sampled";
+    static final String NOT_SAMPLED = "false";
+
+    private final SamplingProperties properties;
+
+    public SamplingInterceptor(SamplingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) return true;
+
+        String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        double rate = properties.rateFor(endpoint);
+        boolean sampled = rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+        MDC.put(ENDPOINT_KEY, endpoint);
+        MDC.put(SAMPLED_KEY, String.valueOf(sampled));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        clear();
+    }
+
+    /**
+     * Async handlers such as streamed exports complete on another thread, so afterCompletion never runs on the
+     * container thread that ran preHandle; clear its MDC here before the thread goes back to the pool.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        clear();
+    }
+
+    private static void clear() {
+        MDC.remove(ENDPOINT_KEY);
+        MDC.remove(SAMPLED_KEY);
+    }
+}
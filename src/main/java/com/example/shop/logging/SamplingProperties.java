@@ -0,0 +1,34 @@
+package com.example.shop.logging;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "shop.logging.sampling")
+public class SamplingProperties {
+
+    private double defaultRate = 1.0;
+
+    private Map<String, Double> endpoints = new HashMap<>();
+
+    public double getDefaultRate() {
+        return defaultRate;
+    }
+
+    public void setDefaultRate(double defaultRate) {
+        this.defaultRate = defaultRate;
+    }
+
+    public Map<String, Double> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Double> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public double rateFor(String endpoint) {
+        return endpoints.getOrDefault(endpoint, defaultRate);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.shop.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rejects INFO and below on requests that {@link SamplingInterceptor} did not sample, before the event is
+ * even created. Warnings and errors always pass. The counter includes level checks made by fluent calls.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final AtomicLong sampledOut = new AtomicLong();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || level.isGreaterOrEqual(Level.WARN)) return FilterReply.NEUTRAL;
+        if (SamplingInterceptor.NOT_SAMPLED.equals(MDC.get(SamplingInterceptor.SAMPLED_KEY))) {
+            sampledOut.incrementAndGet();
+            return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.get();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.shop.metrics;
+
+import com.example.shop.expiry.OrderExpiry;
+import com.example.shop.model.Order.Status;
+import com.example.shop.reporting.SalesAggregates;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    MeterBinder inProgressOrdersGauge(SalesAggregates salesAggregates) {
+        return registry -> Gauge.builder("shop.orders.in.progress", salesAggregates,
+                        aggregates -> aggregates.count(Status.IN_PROGRESS))
+                .description("Orders currently holding stock")
+                .register(registry);
+    }
+
+    @Bean
+    MeterBinder pendingExpiryGauge(OrderExpiry orderExpiry) {
+        return registry -> Gauge.builder("shop.orders.expiry.pending", orderExpiry, OrderExpiry::pending)
+                .description("Order expiry timers not yet due, including those of orders already closed")
+                .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.shop.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts orders turned away, by reason. Incremented where the service decides the rejection, so orders
+ * rejected inside a batch are counted as well as those that end a request with an error.
+ */
+@Component
+public class OrderRejections {
+
+    private final Counter insufficientStock;
+    private final Counter notInProgress;
+
+    public OrderRejections(MeterRegistry meterRegistry) {
+        this.insufficientStock = Counter.builder("shop.orders.rejected")
+                .tag("reason", "insufficient_stock")
+                .register(meterRegistry);
+        this.notInProgress = Counter.builder("shop.orders.rejected")
+                .tag("reason", "not_in_progress")
+                .register(meterRegistry);
+    }
+
+    public void insufficientStock() {
+        insufficientStock.increment();
+    }
+
+    public void notInProgress() {
+        notInProgress.increment();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// a finished order moved out of PRODUCT_ORDER: one row without secondary indexes, the lines packed into one column
+@Entity
+@Table(name = "ORDER_ARCHIVE")
+public class ArchivedOrder implements Persistable<Long> {
+    @Id
+    private Long id;
+    private Order.Status status;
+    private Instant createdAt;
+    private long version;
+    @Column(length = 1_000_000)
+    private byte[] lines;
+    @Transient
+    private boolean stored;
+
+    public ArchivedOrder() {
+    }
+
+    public ArchivedOrder(Long id, Order.Status status, Instant createdAt, long version, byte[] lines) {
+        this.id = id;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.version = version;
+        this.lines = lines;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Order.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Order.Status status) {
+        this.status = status;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public byte[] getLines() {
+        return lines;
+    }
+
+    public void setLines(byte[] lines) {
+        this.lines = lines;
+    }
+
+    // ids are copied from the order, so they cannot tell a new row from a stored one
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchivedOrder {" + "id=" + id + ", status=" + status + ", lines=" + lines.length + " bytes}";
+    }
+}
@@ -1,26 +1,58 @@
 package com.example.shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderColumn;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// the order id is the last index column so that filtered pages ordered by id are read straight from the index
 @Entity
-@Table(name = "PRODUCT_ORDER")
+@Table(name = "PRODUCT_ORDER", indexes = {
+        @Index(name = "IDX_ORDER_STATUS", columnList = "status, id")
+})
 public class Order {
     @Id
     @GeneratedValue
     private Long id;
-    private Long productId;
-    private Integer quantity;
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "ORDER_LINE", joinColumns = @JoinColumn(name = "order_id"),
+            indexes = @Index(name = "IDX_ORDER_LINE_PRODUCT", columnList = "productId, order_id"))
+    @OrderColumn(name = "line_number")
+    @BatchSize(size = 50)
+    private List<OrderLine> lines = new ArrayList<>();
     private Status status;
+    @CreationTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant createdAt;
+    @Version
+    @JsonIgnore
+    private long version;
 
     public Order() {
     }
 
     public Order(Long productId, Integer quantity, Status status) {
-        this.productId = productId;
-        this.quantity = quantity;
+        this(new ArrayList<>(List.of(new OrderLine(productId, quantity))), status);
+    }
+
+    public Order(List<OrderLine> lines, Status status) {
+        this.lines = lines;
         this.status = status;
     }
 
@@ -32,20 +64,43 @@ public class Order {
         this.id = id;
     }
 
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLine> lines) {
+        this.lines = lines == null ? new ArrayList<>() : lines;
+    }
+
+    // productId and quantity are shorthand for an order with a single line
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public Long getProductId() {
-        return productId;
+        return lines.size() == 1 ? lines.get(0).getProductId() : null;
     }
 
     public void setProductId(Long productId) {
-        this.productId = productId;
+        firstLine().setProductId(productId);
     }
 
+    /**
+     * Total quantity over all lines.
+     */
     public Integer getQuantity() {
-        return quantity;
+        if (lines.isEmpty()) return null;
+        int total = 0;
+        for (OrderLine line : lines) {
+            total += line.getQuantity() == null ? 0 : line.getQuantity();
+        }
+        return total;
     }
 
     public void setQuantity(Integer quantity) {
-        this.quantity = quantity;
+        firstLine().setQuantity(quantity);
+    }
+
+    private OrderLine firstLine() {
+        if (lines.isEmpty()) lines.add(new OrderLine());
+        return lines.get(0);
     }
 
     public Status getStatus() {
@@ -56,9 +111,25 @@ public class Order {
         this.status = status;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
-        return "Order {" + "id=" + id + ", productId=" + productId + ", quantity=" + quantity + ", status=" + status + '}';
+        return "Order {" + "id=" + id + ", lines=" + lines + ", status=" + status + '}';
     }
 
     public enum Status {
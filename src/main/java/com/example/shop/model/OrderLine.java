@@ -0,0 +1,61 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Embeddable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Embeddable
+public class OrderLine {
+    private Long productId;
+    private Integer quantity;
+
+    public OrderLine() {
+    }
+
+    public OrderLine(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public static List<OrderLine> of(Map<Long, Integer> quantities) {
+        List<OrderLine> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> lines.add(new OrderLine(productId, quantity)));
+        return lines;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OrderLine line)) return false;
+        return Objects.equals(productId, line.productId) && Objects.equals(quantity, line.quantity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productId, quantity);
+    }
+
+    @Override
+    public String toString() {
+        return "OrderLine {" + "productId=" + productId + ", quantity=" + quantity + '}';
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.shop.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+// one row per price change, only ever inserted; PriceHistory serves the reads from memory
+@Entity
+@Table(name = "PRICE_CHANGE", indexes = {
+        @Index(name = "IDX_PRICE_CHANGE_PRODUCT", columnList = "productId, changedAt, id")
+})
+public class PriceChange {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private Long productId;
+    private Instant changedAt;
+    private double price;
+
+    public PriceChange() {
+    }
+
+    public PriceChange(Long productId, Instant changedAt, double price) {
+        this.productId = productId;
+        this.changedAt = changedAt;
+        this.price = price;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(Instant changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.DynamicUpdate;
 
+// updates write only the changed columns, so a patch of one field does not rewrite the others
 @Entity
+@DynamicUpdate
 public class Product {
     @Id
     @GeneratedValue
@@ -12,6 +17,9 @@ public class Product {
     private String name;
     private double price;
     private Integer stock;
+    @Version
+    @JsonIgnore
+    private long version;
 
     public Product() {
     }
@@ -22,6 +30,14 @@ public class Product {
         this.stock = stock;
     }
 
+    public Product(Product product) {
+        this.id = product.id;
+        this.name = product.name;
+        this.price = product.price;
+        this.stock = product.stock;
+        this.version = product.version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -54,6 +70,14 @@ public class Product {
         this.stock = stock;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Product {" + "id=" + id + ", name='" + name + '\'' + ", price=" + price + ", stock=" + stock + '}';
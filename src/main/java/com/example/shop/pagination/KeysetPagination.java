@@ -0,0 +1,71 @@
+package com.example.shop.pagination;
+
+import com.example.shop.exception.InvalidPageRequestException;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+@Component
+public class KeysetPagination {
+
+    private static final String ID = "id";
+
+    private final int defaultSize;
+    private final int maxSize;
+
+    public KeysetPagination(@Value("${shop.pagination.default-size:50}") int defaultSize,
+                            @Value("${shop.pagination.max-size:500}") int maxSize) {
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    public Limit limit(Integer size) {
+        if (size == null) return Limit.of(defaultSize);
+        if (size < 1 || size > maxSize) {
+            throw new InvalidPageRequestException("Page size must be between 1 and " + maxSize);
+        }
+        return Limit.of(size);
+    }
+
+    public Sort sort(String sort, Set<String> allowedProperties) {
+        if (sort == null || sort.isBlank()) return Sort.by(ID);
+
+        String[] parts = sort.split(",");
+        String property = parts[0].trim();
+        if (!allowedProperties.contains(property)) {
+            throw new InvalidPageRequestException("Cannot sort by '" + property + "', allowed fields are " + allowedProperties);
+        }
+        Sort.Direction direction = parts.length > 1 ? Sort.Direction.fromOptionalString(parts[1].trim())
+                .orElseThrow(() -> new InvalidPageRequestException("Unknown sort direction '" + parts[1].trim() + "'")) : Sort.Direction.ASC;
+        if (ID.equals(property)) return Sort.by(direction, ID);
+        return Sort.by(direction, property).and(Sort.by(direction, ID));
+    }
+
+    /**
+     * Keyset position right after the row with the given id. The row itself is only loaded when the sort
+     * uses more than the id, since its sort values are part of the keyset.
+     */
+    public static ScrollPosition after(Long id, Sort sort, Supplier<?> anchor) {
+        if (id == null) return ScrollPosition.keyset();
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        BeanWrapperImpl anchorBean = null;
+        for (Sort.Order order : sort) {
+            if (ID.equals(order.getProperty())) {
+                keys.put(ID, id);
+            } else {
+                if (anchorBean == null) anchorBean = new BeanWrapperImpl(anchor.get());
+                keys.put(order.getProperty(), anchorBean.getPropertyValue(order.getProperty()));
+            }
+        }
+        return ScrollPosition.forward(keys);
+    }
+}
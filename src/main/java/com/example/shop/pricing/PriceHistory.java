@@ -0,0 +1,87 @@
+package com.example.shop.pricing;
+
+import com.example.shop.dto.PriceChangeRow;
+import com.example.shop.dto.PricePoint;
+import com.example.shop.model.PriceChange;
+import com.example.shop.repository.PriceChangeRepository;
+import com.example.shop.util.Transactions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Every price change per product. The PRICE_CHANGE table is the append-only record; range queries are served
+ * from a {@link PriceSeries} per product, so they never touch the database. Changes recorded inside a
+ * transaction reach the series after it commits. {@link #rebuild()} reloads the series from the table.
+ */
+@Component
+public class PriceHistory {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceHistory.class);
+
+    private final PriceChangeRepository priceChangeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private volatile Map<Long, PriceSeries> series = new ConcurrentHashMap<>();
+
+    public PriceHistory(PriceChangeRepository priceChangeRepository, TransactionTemplate transactionTemplate) {
+        this.priceChangeRepository = priceChangeRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, PriceSeries> rebuilt = new ConcurrentHashMap<>();
+        long[] changes = {0};
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<PriceChangeRow> rows = priceChangeRepository.streamAll()) {
+                rows.forEach(row -> {
+                    rebuilt.computeIfAbsent(row.getProductId(), id -> new PriceSeries())
+                            .append(row.getChangedAt().toEpochMilli(), row.getPrice());
+                    changes[0]++;
+                });
+            }
+        });
+        series = rebuilt;
+        log.atInfo().addKeyValue("changes", changes[0]).addKeyValue("products", rebuilt.size()).log("Price history rebuilt");
+    }
+
+    public void record(Long productId, double price) {
+        Instant changedAt = Instant.now();
+        priceChangeRepository.save(new PriceChange(productId, changedAt, price));
+        Transactions.afterCommit(() -> {
+            PriceSeries prices = series.computeIfAbsent(productId, id -> new PriceSeries());
+            synchronized (prices) {
+                prices.append(changedAt.toEpochMilli(), price);
+            }
+        });
+    }
+
+    /**
+     * The product's price changes at or after {@code from} and before {@code to}, oldest first. A null bound
+     * leaves that side of the range open.
+     */
+    public List<PricePoint> between(Long productId, Instant from, Instant to) {
+        List<PricePoint> points = new ArrayList<>();
+        PriceSeries prices = series.get(productId);
+        if (prices == null) return points;
+        synchronized (prices) {
+            prices.forEach(from == null ? Long.MIN_VALUE : from.toEpochMilli(), to == null ? Long.MAX_VALUE : to.toEpochMilli(),
+                    (time, price) -> points.add(new PricePoint(Instant.ofEpochMilli(time), price)));
+        }
+        return points;
+    }
+
+    public void remove(Long productId) {
+        Transactions.afterCommit(() -> series.remove(productId));
+    }
+}
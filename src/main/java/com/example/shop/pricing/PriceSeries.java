@@ -0,0 +1,96 @@
+package com.example.shop.pricing;
+
+import com.example.shop.util.Varints;
+
+import java.util.Arrays;
+
+/**
+ * Price changes of one product, stored as two delta-encoded columns. Every {@value #BLOCK} changes start a
+ * block whose first time and price are kept in full in the anchor columns; the other changes of the block
+ * are stored as zigzag varint differences to the change before. A range query binary searches the anchor
+ * times and decodes forward from at most one block before the first change in range. Times are epoch millis
+ * and never go backwards; prices are kept in millionths. Not thread-safe.
+ */
+public class PriceSeries {
+
+    static final int BLOCK = 32;
+    private static final double SCALE = 1_000_000;
+
+    public interface PriceConsumer {
+        void accept(long time, double price);
+    }
+
+    private long[] anchorTimes = new long[1];
+    private long[] anchorPrices = new long[1];
+    private int[] anchorOffsets = new int[1];
+    private byte[] deltas = new byte[32];
+    private int length;
+    private int size;
+    private long lastTime;
+    private long lastPrice;
+
+    public void append(long time, double price) {
+        long units = Math.round(price * SCALE);
+        if (size > 0) time = Math.max(time, lastTime);
+        if (size % BLOCK == 0) {
+            int block = size / BLOCK;
+            if (block == anchorTimes.length) {
+                anchorTimes = Arrays.copyOf(anchorTimes, block * 2);
+                anchorPrices = Arrays.copyOf(anchorPrices, block * 2);
+                anchorOffsets = Arrays.copyOf(anchorOffsets, block * 2);
+            }
+            anchorTimes[block] = time;
+            anchorPrices[block] = units;
+            anchorOffsets[block] = length;
+        } else {
+            if (length + 2 * Varints.MAX_LENGTH > deltas.length) deltas = Arrays.copyOf(deltas, Math.max(deltas.length * 2, length + 2 * Varints.MAX_LENGTH));
+            length = Varints.write(deltas, length, Varints.zigzag(time - lastTime));
+            length = Varints.write(deltas, length, Varints.zigzag(units - lastPrice));
+        }
+        lastTime = time;
+        lastPrice = units;
+        size++;
+    }
+
+    /**
+     * Hands the changes at or after {@code from} and before {@code to} to the consumer, oldest first.
+     */
+    public void forEach(long from, long to, PriceConsumer consumer) {
+        if (size == 0 || from >= to) return;
+        int index = Math.max(firstBlockAtOrAfter(from) - 1, 0) * BLOCK;
+        int[] position = {0};
+        long time = 0;
+        long units = 0;
+        for (; index < size; index++) {
+            if (index % BLOCK == 0) {
+                int block = index / BLOCK;
+                time = anchorTimes[block];
+                units = anchorPrices[block];
+                position[0] = anchorOffsets[block];
+            } else {
+                time += Varints.unzigzag(Varints.read(deltas, position));
+                units += Varints.unzigzag(Varints.read(deltas, position));
+            }
+            if (time >= to) return;
+            if (time >= from) consumer.accept(time, units / SCALE);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int firstBlockAtOrAfter(long time) {
+        int low = 0;
+        int high = (size + BLOCK - 1) / BLOCK;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (anchorTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.shop.reporting;
+
+import java.util.Arrays;
+
+/**
+ * Map from long keys to sorted sets of long values, without boxing. Keys live in an open-addressing table
+ * with linear probing and backward-shift deletion, and every key's values in a sorted long array of its own.
+ * 10M values take 10-15 bytes each, against 30-40 in a {@code HashMap<Long, List<Long>>} (see
+ * OpenOrderIndexBenchmark). Adding and removing a value shift the values after it, which stays cheap because
+ * ids are mostly added in ascending order. Not thread-safe.
+ */
+public class LongMultimap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_VALUES = 4;
+    private static final long[] NONE = new long[0];
+
+    private long[] keys;
+    private long[][] values;
+    private int[] sizes;
+    private int size;
+    private long valueCount;
+
+    public LongMultimap() {
+        clear();
+    }
+
+    /**
+     * Adds a value to the key's set; false if it was already there.
+     */
+    public boolean put(long key, long value) {
+        int slot = slot(key);
+        if (values[slot] == null) {
+            keys[slot] = key;
+            values[slot] = new long[MIN_VALUES];
+            if (++size * 4L > keys.length * 3L) {
+                resize(keys.length * 2);
+                slot = slot(key);
+            }
+        }
+        long[] set = values[slot];
+        int count = sizes[slot];
+        int position = count > 0 && set[count - 1] < value ? -count - 1 : Arrays.binarySearch(set, 0, count, value);
+        if (position >= 0) return false;
+        position = -position - 1;
+        if (count == set.length) {
+            set = values[slot] = Arrays.copyOf(set, count + (count >> 1));
+        }
+        System.arraycopy(set, position, set, position + 1, count - position);
+        set[position] = value;
+        sizes[slot] = count + 1;
+        valueCount++;
+        return true;
+    }
+
+    /**
+     * Removes a value from the key's set, and the key with its last value; false if it was not there.
+     */
+    public boolean remove(long key, long value) {
+        int slot = slot(key);
+        if (values[slot] == null) return false;
+        long[] set = values[slot];
+        int count = sizes[slot];
+        int position = Arrays.binarySearch(set, 0, count, value);
+        if (position < 0) return false;
+        System.arraycopy(set, position + 1, set, position, count - position - 1);
+        sizes[slot] = --count;
+        valueCount--;
+        if (count == 0) {
+            delete(slot);
+        } else if (set.length > MIN_VALUES * 4 && count < set.length / 4) {
+            values[slot] = Arrays.copyOf(set, set.length / 2);
+        }
+        return true;
+    }
+
+    /**
+     * The key's values in ascending order, as a copy.
+     */
+    public long[] get(long key) {
+        int slot = slot(key);
+        return values[slot] == null ? NONE : Arrays.copyOf(values[slot], sizes[slot]);
+    }
+
+    public int count(long key) {
+        return sizes[slot(key)];
+    }
+
+    public int keyCount() {
+        return size;
+    }
+
+    public long valueCount() {
+        return valueCount;
+    }
+
+    public void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new long[MIN_CAPACITY][];
+        sizes = new int[MIN_CAPACITY];
+        size = 0;
+        valueCount = 0;
+    }
+
+    // the key's slot, or the empty slot it would go into
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = index(key, mask);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int index(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // moves later entries of the probe run back into the gap, so lookups never need tombstones
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = index(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                sizes[gap] = sizes[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        sizes[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[][] oldValues = values;
+        int[] oldSizes = sizes;
+        keys = new long[capacity];
+        values = new long[capacity][];
+        sizes = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            sizes[slot] = oldSizes[i];
+        }
+    }
+}
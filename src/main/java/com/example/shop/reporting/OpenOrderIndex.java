@@ -0,0 +1,81 @@
+package com.example.shop.reporting;
+
+import com.example.shop.dto.OrderLineRef;
+import com.example.shop.model.Order;
+import com.example.shop.model.Order.Status;
+import com.example.shop.model.OrderLine;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.util.Transactions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/**
+ * Ids of the orders in progress per product, so that finding the open orders for a product never scans
+ * orders. Kept up to date by the order write paths; changes made inside a transaction are applied after it
+ * commits. {@link #rebuild()} reloads it from the order lines.
+ */
+@Component
+public class OpenOrderIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenOrderIndex.class);
+
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private volatile LongMultimap orders = new LongMultimap();
+
+    public OpenOrderIndex(OrderRepository orderRepository, TransactionTemplate transactionTemplate) {
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        LongMultimap rebuilt = new LongMultimap();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<OrderLineRef> lines = orderRepository.streamLinesByStatus(Status.IN_PROGRESS)) {
+                lines.forEach(line -> rebuilt.put(line.getProductId(), line.getOrderId()));
+            }
+        });
+        synchronized (this) {
+            orders = rebuilt;
+        }
+        log.atInfo().addKeyValue("orders", rebuilt.valueCount()).addKeyValue("products", rebuilt.keyCount()).log("Open order index rebuilt");
+    }
+
+    public void opened(Order order) {
+        Transactions.afterCommit(() -> {
+            synchronized (this) {
+                for (OrderLine line : order.getLines()) {
+                    orders.put(line.getProductId(), order.getId());
+                }
+            }
+        });
+    }
+
+    public void closed(Order order) {
+        Transactions.afterCommit(() -> {
+            synchronized (this) {
+                for (OrderLine line : order.getLines()) {
+                    orders.remove(line.getProductId(), order.getId());
+                }
+            }
+        });
+    }
+
+    /**
+     * Ids of the orders in progress with a line for the product, in ascending order.
+     */
+    public synchronized long[] get(long productId) {
+        return orders.get(productId);
+    }
+
+    public synchronized int count(long productId) {
+        return orders.count(productId);
+    }
+}
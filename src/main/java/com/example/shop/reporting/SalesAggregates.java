@@ -0,0 +1,214 @@
+package com.example.shop.reporting;
+
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.dto.OrderTotals;
+import com.example.shop.dto.ProductSales;
+import com.example.shop.model.Order;
+import com.example.shop.model.Order.Status;
+import com.example.shop.model.OrderLine;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.util.Transactions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Order count and quantity per product and status, kept up to date by the order write paths so that the
+ * sales report never scans orders. An order counts once for every product it has a line for, so the
+ * number of orders per status is kept separately. Changes made inside a transaction are applied after it commits.
+ * {@link #rebuild()} recomputes everything from the order table and the order archive.
+ */
+@Component
+public class SalesAggregates {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesAggregates.class);
+    private static final Status[] STATUSES = Status.values();
+
+    private final OrderRepository orderRepository;
+    private final OrderArchive orderArchive;
+    private final TransactionTemplate snapshot;
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private volatile Totals totals = new Totals();
+    // changes applied while a rebuild reads, replayed onto its result; null when no rebuild runs
+    private Queue<Consumer<Totals>> pending;
+
+    public SalesAggregates(OrderRepository orderRepository, OrderArchive orderArchive,
+                           PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderArchive = orderArchive;
+        // the archiver moves orders between the two tables, so both are read from one snapshot
+        this.snapshot = new TransactionTemplate(transactionManager);
+        this.snapshot.setReadOnly(true);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Reads all totals in one repeatable-read transaction. Changes committed meanwhile still go to the
+     * current totals and are replayed onto the rebuilt ones before they replace them, so none is lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Queue<Consumer<Totals>> changes = new ConcurrentLinkedQueue<>();
+        locked(rebuildLock.writeLock(), () -> pending = changes);
+        Totals rebuilt;
+        try {
+            rebuilt = snapshot.execute(status -> read());
+        } catch (RuntimeException e) {
+            locked(rebuildLock.writeLock(), () -> pending = null);
+            throw e;
+        }
+        locked(rebuildLock.writeLock(), () -> {
+            changes.forEach(change -> change.accept(rebuilt));
+            totals = rebuilt;
+            pending = null;
+        });
+        log.atInfo().addKeyValue("products", rebuilt.counters.size()).log("Sales aggregates rebuilt");
+    }
+
+    private Totals read() {
+        Totals rebuilt = new Totals();
+        List<OrderTotals> sums = orderRepository.sumByProductAndStatus();
+        for (OrderTotals total : sums) {
+            if (total.getProductId() == null || total.getStatus() == null) continue;
+            rebuilt.counters(total.getProductId()).add(total.getStatus(), total.getOrders(), total.getQuantity());
+        }
+        for (Status status : STATUSES) {
+            rebuilt.count(status, orderRepository.countByStatus(status));
+        }
+        // archived lines are packed, so they are added up here rather than by the database
+        orderArchive.forEach(order -> {
+            rebuilt.count(order.getStatus(), 1);
+            for (OrderLine line : order.getLines()) {
+                rebuilt.counters(line.getProductId()).add(order.getStatus(), 1, line.getQuantity());
+            }
+        });
+        return rebuilt;
+    }
+
+    public void added(Order order) {
+        apply(totals -> {
+            totals.count(order.getStatus(), 1);
+            for (OrderLine line : order.getLines()) {
+                totals.counters(line.getProductId()).add(order.getStatus(), 1, line.getQuantity());
+            }
+        });
+    }
+
+    public void moved(Order order, Status from) {
+        apply(totals -> {
+            totals.count(from, -1);
+            totals.count(order.getStatus(), 1);
+            for (OrderLine line : order.getLines()) {
+                Counters productCounters = totals.counters(line.getProductId());
+                productCounters.add(from, -1, -line.getQuantity());
+                productCounters.add(order.getStatus(), 1, line.getQuantity());
+            }
+        });
+    }
+
+    public void removed(Order order) {
+        apply(totals -> {
+            totals.count(order.getStatus(), -1);
+            for (OrderLine line : order.getLines()) {
+                totals.counters(line.getProductId()).add(order.getStatus(), -1, -line.getQuantity());
+            }
+        });
+    }
+
+    public ProductSales get(Long productId) {
+        Counters productCounters = totals.counters.get(productId);
+        return productCounters == null ? new ProductSales(productId, Counters.empty()) : productCounters.snapshot(productId);
+    }
+
+    public List<ProductSales> getAll() {
+        return totals.counters.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .toList();
+    }
+
+    public long count(Status status) {
+        return totals.orders[status.ordinal()].sum();
+    }
+
+    private void apply(Consumer<Totals> change) {
+        // updates only share the read lock, a rebuild takes the write lock just to start and to swap
+        Transactions.afterCommit(() -> locked(rebuildLock.readLock(), () -> {
+            change.accept(totals);
+            if (pending != null) pending.add(change);
+        }));
+    }
+
+    private static void locked(Lock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Totals {
+        private final Map<Long, Counters> counters = new ConcurrentHashMap<>();
+        private final LongAdder[] orders = Counters.adders();
+
+        void count(Status status, long delta) {
+            if (status != null) orders[status.ordinal()].add(delta);
+        }
+
+        Counters counters(Long productId) {
+            return counters.computeIfAbsent(productId, id -> new Counters());
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder[] orders = adders();
+        private final LongAdder[] quantity = adders();
+
+        void add(Status status, long orderDelta, long quantityDelta) {
+            if (status == null) return;
+            orders[status.ordinal()].add(orderDelta);
+            quantity[status.ordinal()].add(quantityDelta);
+        }
+
+        ProductSales snapshot(Long productId) {
+            Map<Status, ProductSales.Totals> statuses = new EnumMap<>(Status.class);
+            for (Status status : STATUSES) {
+                statuses.put(status, new ProductSales.Totals(orders[status.ordinal()].sum(), quantity[status.ordinal()].sum()));
+            }
+            return new ProductSales(productId, statuses);
+        }
+
+        static Map<Status, ProductSales.Totals> empty() {
+            Map<Status, ProductSales.Totals> statuses = new EnumMap<>(Status.class);
+            for (Status status : STATUSES) {
+                statuses.put(status, new ProductSales.Totals(0, 0));
+            }
+            return statuses;
+        }
+
+        private static LongAdder[] adders() {
+            LongAdder[] adders = new LongAdder[STATUSES.length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+}
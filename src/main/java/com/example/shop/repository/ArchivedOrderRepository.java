@@ -0,0 +1,20 @@
+package com.example.shop.repository;
+
+import com.example.shop.dto.ArchivedOrderRow;
+import com.example.shop.model.ArchivedOrder;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+    // rows rather than entities, so that reading the whole archive does not fill the persistence context
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a.id as id, a.status as status, a.createdAt as createdAt, a.version as version, a.lines as lines"
+            + " from ArchivedOrder a order by a.id")
+    Stream<ArchivedOrderRow> streamAll();
+}
@@ -1,7 +1,69 @@
 package com.example.shop.repository;
 
+import com.example.shop.dto.OrderCreation;
+import com.example.shop.dto.OrderLineRef;
+import com.example.shop.dto.OrderTotals;
 import com.example.shop.model.Order;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
-}
\ No newline at end of file
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
+    Window<Order> findAllBy(ScrollPosition position, Limit limit, Sort sort);
+
+    Window<Order> findByStatus(Order.Status status, ScrollPosition position, Limit limit, Sort sort);
+
+    // a derived findByLinesProductId outer-joins the lines, which walks every order instead of the product index
+    default Window<Order> findByProductId(Long productId, ScrollPosition position, Limit limit, Sort sort) {
+        return findBy(hasLineFor(productId), query -> query.sortBy(sort).limit(limit.max()).scroll(position));
+    }
+
+    default Window<Order> findByProductIdAndStatus(Long productId, Order.Status status, ScrollPosition position, Limit limit, Sort sort) {
+        Specification<Order> hasStatus = (root, query, builder) -> builder.equal(root.get("status"), status);
+        return findBy(hasLineFor(productId).and(hasStatus), query -> query.sortBy(sort).limit(limit.max()).scroll(position));
+    }
+
+    private static Specification<Order> hasLineFor(Long productId) {
+        return (root, query, builder) -> builder.equal(root.join("lines").get("productId"), productId);
+    }
+
+    long countByStatus(Order.Status status);
+
+    @Query("select l.productId as productId, o.status as status, count(o) as orders, coalesce(sum(l.quantity), 0) as quantity"
+            + " from Order o join o.lines l group by l.productId, o.status")
+    List<OrderTotals> sumByProductAndStatus();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o from Order o order by o.id")
+    Stream<Order> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id as id, o.createdAt as createdAt from Order o where o.status = :status")
+    Stream<OrderCreation> streamCreationByStatus(@Param("status") Order.Status status);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id as orderId, l.productId as productId from Order o join o.lines l where o.status = :status order by o.id")
+    Stream<OrderLineRef> streamLinesByStatus(@Param("status") Order.Status status);
+
+    // orders from before creation times were recorded count as old
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.status in :statuses and (o.createdAt is null or o.createdAt < :cutoff) order by o.id")
+    List<Order> findForArchive(@Param("statuses") Collection<Order.Status> statuses, @Param("cutoff") Instant cutoff, Limit limit);
+}
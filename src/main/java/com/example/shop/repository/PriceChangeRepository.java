@@ -0,0 +1,20 @@
+package com.example.shop.repository;
+
+import com.example.shop.dto.PriceChangeRow;
+import com.example.shop.model.PriceChange;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface PriceChangeRepository extends JpaRepository<PriceChange, Long> {
+    // changes of deleted products stay in the table but are not loaded
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select c.productId as productId, c.changedAt as changedAt, c.price as price from PriceChange c"
+            + " where c.productId in (select p.id from Product p) order by c.productId, c.changedAt, c.id")
+    Stream<PriceChangeRow> streamAll();
+}
@@ -0,0 +1,117 @@
+package com.example.shop.representation;
+
+import com.example.shop.exception.InvalidFieldSelectionException;
+import com.example.shop.model.Order;
+import com.example.shop.model.Product;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compact JSON representation for machine clients that never follow links: entities are written as plain
+ * objects and collections as flat arrays, without the HAL wrappers. {@code ?fields=} narrows every product
+ * or order to the listed properties. It is served under its own media type, since {@code application/json}
+ * keeps returning HAL for existing clients.
+ */
+@Component
+public class CompactJson {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.shop.compact+json";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private static final String FIELDS_FILTER = "fields";
+    private static final Selection ALL_FIELDS = new Selection(Collections.emptySortedSet(), null);
+
+    private final AbstractJackson2HttpMessageConverter converter;
+    private final Map<Class<?>, Set<String>> properties = new ConcurrentHashMap<>();
+
+    public CompactJson(ObjectMapper objectMapper) {
+        ObjectMapper compactMapper = objectMapper.copy()
+                .addMixIn(Product.class, FieldFilter.class)
+                .addMixIn(Order.class, FieldFilter.class)
+                .setFilterProvider(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+        // not a MappingJackson2HttpMessageConverter, Spring HATEOAS registers its HAL mappers on the first one
+        this.converter = new AbstractJackson2HttpMessageConverter(compactMapper, MEDIA_TYPE) {
+            @Override
+            public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+                // only bodies of the compact endpoints, HAL models and errors keep their own converters
+                return MappingJacksonValue.class.isAssignableFrom(clazz) && super.canWrite(clazz, mediaType);
+            }
+
+            @Override
+            public boolean canRead(Class<?> clazz, MediaType mediaType) {
+                return false;
+            }
+        };
+    }
+
+    public AbstractJackson2HttpMessageConverter converter() {
+        return converter;
+    }
+
+    /**
+     * Parses a {@code fields} parameter against the serialized properties of the given type.
+     */
+    public Selection select(Class<?> type, String fields) {
+        if (fields == null || fields.isBlank()) return ALL_FIELDS;
+
+        Set<String> allowed = properties.computeIfAbsent(type, this::serializedProperties);
+        Set<String> selected = new TreeSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) continue;
+            if (!allowed.contains(name)) {
+                throw new InvalidFieldSelectionException("Unknown field '" + name + "', allowed fields are " + allowed);
+            }
+            selected.add(name);
+        }
+        if (selected.isEmpty()) return ALL_FIELDS;
+        return new Selection(selected, new SimpleFilterProvider()
+                .addFilter(FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(selected)));
+    }
+
+    private Set<String> serializedProperties(Class<?> type) {
+        ObjectMapper mapper = converter.getObjectMapper();
+        return mapper.getSerializationConfig().introspect(mapper.constructType(type)).findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    public record Selection(Set<String> fields, FilterProvider filters) {
+
+        public MappingJacksonValue body(Object body) {
+            MappingJacksonValue value = new MappingJacksonValue(body);
+            if (filters != null) value.setFilters(filters);
+            return value;
+        }
+
+        /**
+         * Entity tag of this representation, distinct from the HAL one and from other field selections.
+         */
+        public String tag(String etag) {
+            if (etag == null) return null;
+            String variant = fields.isEmpty() ? "compact" : "compact:" + String.join(",", fields);
+            return etag.substring(0, etag.length() - 1) + ';' + variant + '"';
+        }
+    }
+
+    @JsonFilter(FIELDS_FILTER)
+    private interface FieldFilter {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.shop.representation;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class CompactJsonConfig implements WebMvcConfigurer {
+
+    private final CompactJson compactJson;
+
+    public CompactJsonConfig(CompactJson compactJson) {
+        this.compactJson = compactJson;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // ahead of the default Jackson converter, which would also accept the +json media type
+        converters.add(0, compactJson.converter());
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.shop.search;
+
+import com.example.shop.dto.ProductName;
+import com.example.shop.dto.ProductSearchResult;
+import com.example.shop.exception.InvalidSearchQueryException;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.util.Transactions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory n-gram index over product names for typeahead search. Names are lower-cased and prefixed with
+ * a start-of-name marker. Every trigram of a name is indexed, plus the 4 and 5 character grams starting at
+ * the marker or at a space, so name and word prefixes of up to 4 characters are a single list lookup.
+ * <p>
+ * Posting lists hold {@code (name length << 40) | id} keys in ascending order, so every list walks from
+ * the shortest name to the longest. Results are collected in three passes: name prefix, word prefix,
+ * substring. Within a pass all hits rank equally and shorter names come first, so each pass stops as soon
+ * as the result is full instead of scoring every match. Longer queries are answered by intersecting the
+ * query's grams and checking the candidates, with at most {@code shop.search.max-candidates} steps per pass.
+ * <p>
+ * Posting lists are copy-on-write arrays, so searches never lock; writes are serialized.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+    private static final char NAME_START = '\u0001';
+    private static final int MIN_QUERY_LENGTH = 2;
+    private static final int PREFIX_LENGTH = 4;
+    private static final int DEFAULT_RESULTS = 10;
+    private static final int ID_BITS = 40;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long[] EMPTY = new long[0];
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxResults;
+    private final int maxCandidates;
+    private final Object writeLock = new Object();
+    private volatile State state = new State(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+    public ProductSearchIndex(ProductRepository productRepository, TransactionTemplate transactionTemplate,
+                              @Value("${shop.search.max-results:50}") int maxResults,
+                              @Value("${shop.search.max-candidates:10000}") int maxCandidates) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxResults = maxResults;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<ProductName> products = productRepository.streamNames()) {
+                load(products);
+            }
+        });
+    }
+
+    /**
+     * Replaces the whole index. Posting lists are built in bulk and sorted once instead of being inserted
+     * into one key at a time.
+     */
+    public void load(Stream<ProductName> products) {
+        Map<Long, Entry> names = new ConcurrentHashMap<>();
+        Map<String, PostingBuilder> builders = new HashMap<>();
+        products.forEach(product -> {
+            if (product.getName() == null) return;
+            Entry entry = new Entry(product.getName(), normalizeName(product.getName()));
+            names.put(product.getId(), entry);
+            long key = key(product.getId(), entry);
+            for (String gram : grams(entry.normalized())) {
+                builders.computeIfAbsent(gram, g -> new PostingBuilder()).add(key);
+            }
+        });
+        Map<String, long[]> postings = new ConcurrentHashMap<>(builders.size());
+        builders.forEach((gram, builder) -> postings.put(gram, builder.toSortedArray()));
+
+        synchronized (writeLock) {
+            state = new State(names, postings);
+        }
+        log.atInfo().addKeyValue("products", names.size()).addKeyValue("grams", postings.size()).log("Product search index built");
+    }
+
+    /**
+     * Adds many new products at once. Each gram's posting list is merged once for the whole batch instead of
+     * being copied for every product.
+     */
+    public void indexAll(Map<Long, String> products) {
+        Transactions.afterCommit(() -> {
+            synchronized (writeLock) {
+                State current = state;
+                Map<String, PostingBuilder> builders = new HashMap<>();
+                products.forEach((id, name) -> {
+                    if (name == null) return;
+                    if (current.names().containsKey(id)) {
+                        apply(id, name);
+                        return;
+                    }
+                    Entry entry = new Entry(name, normalizeName(name));
+                    current.names().put(id, entry);
+                    long key = key(id, entry);
+                    for (String gram : grams(entry.normalized())) {
+                        builders.computeIfAbsent(gram, g -> new PostingBuilder()).add(key);
+                    }
+                });
+                builders.forEach((gram, builder) -> current.postings().merge(gram, builder.toSortedArray(), ProductSearchIndex::union));
+            }
+        });
+    }
+
+    public void index(Long id, String name) {
+        Transactions.afterCommit(() -> apply(id, name));
+    }
+
+    public void remove(Long id) {
+        Transactions.afterCommit(() -> apply(id, null));
+    }
+
+    private void apply(Long id, String name) {
+        synchronized (writeLock) {
+            State current = state;
+            Entry previous = current.names().get(id);
+            Entry entry = name == null ? null : new Entry(name, normalizeName(name));
+            if (previous != null && entry != null && previous.normalized().equals(entry.normalized())) {
+                current.names().put(id, entry);
+                return;
+            }
+            if (previous != null) {
+                long key = key(id, previous);
+                for (String gram : grams(previous.normalized())) {
+                    current.postings().computeIfPresent(gram, (g, posting) -> without(posting, key));
+                }
+            }
+            if (entry == null) {
+                current.names().remove(id);
+                return;
+            }
+            current.names().put(id, entry);
+            long key = key(id, entry);
+            for (String gram : grams(entry.normalized())) {
+                current.postings().compute(gram, (g, posting) -> with(posting == null ? EMPTY : posting, key));
+            }
+        }
+    }
+
+    public List<ProductSearchResult> search(String query, Integer size) {
+        int limit = size == null ? DEFAULT_RESULTS : size;
+        if (limit < 1 || limit > maxResults) {
+            throw new InvalidSearchQueryException("Result size must be between 1 and " + maxResults);
+        }
+        String normalized = query == null ? "" : normalizeQuery(query);
+        if (normalized.length() < MIN_QUERY_LENGTH) {
+            throw new InvalidSearchQueryException("Search query must have at least " + MIN_QUERY_LENGTH + " characters");
+        }
+
+        State current = state;
+        String prefix = normalized.substring(0, Math.min(normalized.length(), PREFIX_LENGTH));
+        String[] trigrams = trigrams(normalized);
+        // the prefix gram only covers the first characters of a longer query
+        String[] rest = normalized.length() > PREFIX_LENGTH ? trigrams : new String[0];
+        List<ProductSearchResult> results = new ArrayList<>(limit);
+        collect(current, withGram(NAME_START + prefix, rest), normalized, 0, limit, results);
+        collect(current, withGram(" " + prefix, rest), normalized, 1, limit, results);
+        // a two character substring has no trigram of its own, only word prefixes are searched for it
+        if (trigrams.length > 0) collect(current, trigrams, normalized, 2, limit, results);
+        return results;
+    }
+
+    public int size() {
+        return state.names().size();
+    }
+
+    /**
+     * Walks the intersection of the grams' posting lists from the shortest name up and adds the names that
+     * match the query with the given rank, until the result is full or the candidate budget is spent.
+     */
+    private void collect(State current, String[] grams, String query, int rank, int limit,
+                         List<ProductSearchResult> results) {
+        if (results.size() >= limit) return;
+        long[][] postings = new long[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            postings[i] = current.postings().getOrDefault(grams[i], EMPTY);
+            if (postings[i].length == 0) return;
+        }
+        Arrays.sort(postings, Comparator.comparingInt(posting -> posting.length));
+
+        // leapfrog: every list seeks to the largest head seen so far until all of them agree
+        int[] cursors = new int[postings.length];
+        long candidate = postings[0][0];
+        int scanned = 0;
+        while (scanned++ < maxCandidates) {
+            boolean match = true;
+            for (int i = 0; i < postings.length; i++) {
+                cursors[i] = seek(postings[i], cursors[i], candidate);
+                if (cursors[i] == postings[i].length) return;
+                if (postings[i][cursors[i]] != candidate) {
+                    candidate = postings[i][cursors[i]];
+                    match = false;
+                    break;
+                }
+            }
+            if (!match) continue;
+
+            long id = candidate & ID_MASK;
+            Entry entry = current.names().get(id);
+            if (entry != null && rank(entry.normalized(), query) == rank) {
+                results.add(new ProductSearchResult(id, entry.name()));
+                if (results.size() == limit) return;
+            }
+            if (++cursors[0] == postings[0].length) return;
+            candidate = postings[0][cursors[0]];
+        }
+    }
+
+    /**
+     * First position at or after {@code from} whose key is not less than {@code key}, galloping ahead
+     * before the binary search since consecutive seeks move forward through the list.
+     */
+    private static int seek(long[] posting, int from, long key) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < posting.length && posting[high] < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int position = Arrays.binarySearch(posting, low, Math.min(high + 1, posting.length), key);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    private static int rank(String name, String query) {
+        if (name.startsWith(query, 1)) return 0;
+        int position = name.indexOf(query, 2);
+        while (position >= 0) {
+            if (name.charAt(position - 1) == ' ') return 1;
+            position = name.indexOf(query, position + 1);
+        }
+        return query.length() >= 3 && name.indexOf(query, 1) >= 0 ? 2 : -1;
+    }
+
+    private static String[] withGram(String gram, String[] grams) {
+        String[] all = Arrays.copyOf(grams, grams.length + 1);
+        all[grams.length] = gram;
+        return all;
+    }
+
+    private static long key(long id, Entry entry) {
+        return ((long) Math.min(entry.normalized().length(), 0x7FFFFF) << ID_BITS) | id;
+    }
+
+    /**
+     * Lower case with whitespace runs collapsed to one space and trimmed; a plain loop, since it runs for
+     * every name on a load.
+     */
+    private static String normalizeQuery(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(lower.length());
+        boolean space = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c == ' ' || (c >= '\t' && c <= '\r')) {
+                space = true;
+                continue;
+            }
+            if (space && !normalized.isEmpty()) normalized.append(' ');
+            space = false;
+            normalized.append(c);
+        }
+        return normalized.toString().trim();
+    }
+
+    private static String normalizeName(String name) {
+        return NAME_START + normalizeQuery(name);
+    }
+
+    static String[] trigrams(String text) {
+        if (text.length() < 3) return new String[0];
+        String[] trigrams = new String[text.length() - 2];
+        int size = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            size = addDistinct(trigrams, size, text.substring(i, i + 3));
+        }
+        return size == trigrams.length ? trigrams : Arrays.copyOf(trigrams, size);
+    }
+
+    /**
+     * Trigrams of the normalized name plus the longer grams at the name and word starts. A gram that occurs
+     * twice is listed twice; posting lists ignore the repeated key.
+     */
+    static String[] grams(String normalized) {
+        int trigrams = Math.max(normalized.length() - 2, 0);
+        // at most two longer grams per word start
+        String[] grams = new String[trigrams + 2 * normalized.length()];
+        int size = 0;
+        for (int i = 0; i < trigrams; i++) {
+            grams[size++] = normalized.substring(i, i + 3);
+        }
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i > 0 && normalized.charAt(i) != ' ') continue;
+            for (int length = 4; length <= PREFIX_LENGTH + 1 && i + length <= normalized.length(); length++) {
+                grams[size++] = normalized.substring(i, i + length);
+            }
+        }
+        return Arrays.copyOf(grams, size);
+    }
+
+    // queries are short, so a scan is cheaper than hashing every gram into a set
+    private static int addDistinct(String[] grams, int size, String gram) {
+        for (int i = 0; i < size; i++) {
+            if (grams[i].equals(gram)) return size;
+        }
+        grams[size] = gram;
+        return size + 1;
+    }
+
+    private static long[] with(long[] posting, long key) {
+        int position = Arrays.binarySearch(posting, key);
+        if (position >= 0) return posting;
+        int insertion = -position - 1;
+        long[] updated = new long[posting.length + 1];
+        System.arraycopy(posting, 0, updated, 0, insertion);
+        updated[insertion] = key;
+        System.arraycopy(posting, insertion, updated, insertion + 1, posting.length - insertion);
+        return updated;
+    }
+
+    private static long[] union(long[] posting, long[] keys) {
+        long[] merged = new long[posting.length + keys.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < posting.length || j < keys.length) {
+            long next = j == keys.length || (i < posting.length && posting[i] <= keys[j]) ? posting[i++] : keys[j++];
+            if (size == 0 || merged[size - 1] != next) merged[size++] = next;
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    private static long[] without(long[] posting, long key) {
+        int position = Arrays.binarySearch(posting, key);
+        if (position < 0) return posting;
+        if (posting.length == 1) return null;
+        long[] updated = new long[posting.length - 1];
+        System.arraycopy(posting, 0, updated, 0, position);
+        System.arraycopy(posting, position + 1, updated, position, posting.length - position - 1);
+        return updated;
+    }
+
+    private record State(Map<Long, Entry> names, Map<String, long[]> postings) {
+    }
+
+    private record Entry(String name, String normalized) {
+    }
+
+    private static final class PostingBuilder {
+        private long[] keys = new long[4];
+        private int size;
+
+        void add(long key) {
+            if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+            keys[size++] = key;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(keys, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (distinct == 0 || sorted[distinct - 1] != sorted[i]) sorted[distinct++] = sorted[i];
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+        }
+    }
+}
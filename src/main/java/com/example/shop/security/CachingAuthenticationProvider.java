@@ -0,0 +1,65 @@
+package com.example.shop.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import java.util.concurrent.TimeUnit;
+
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final CredentialCache credentialCache;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CredentialCache credentialCache, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.credentialCache = credentialCache;
+        this.cachedTimer = authenticationTimer(meterRegistry, "cached");
+        this.verifiedTimer = authenticationTimer(meterRegistry, "verified");
+    }
+
+    private static Timer authenticationTimer(MeterRegistry meterRegistry, String path) {
+        return Timer.builder("shop.security.authentication")
+                .description("Time spent authenticating HTTP Basic credentials")
+                .tag("path", path)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (username == null || credentials == null) {
+            return delegate.authenticate(authentication);
+        }
+
+        long start = System.nanoTime();
+        String password = credentials.toString();
+        Authentication cached = credentialCache.get(username, password);
+        if (cached != null) {
+            cachedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        try {
+            Authentication result = delegate.authenticate(authentication);
+            if (result != null && result.isAuthenticated()) {
+                credentialCache.put(username, password, result);
+            }
+            return result;
+        } finally {
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
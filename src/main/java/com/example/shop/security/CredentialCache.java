@@ -0,0 +1,123 @@
+package com.example.shop.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, TTL based cache of HTTP Basic credentials that already passed the BCrypt check.
+ * Entries are keyed by an HMAC of username and password, so the raw password is never kept in memory.
+ */
+@Component
+public class CredentialCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CredentialCache.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final SecretKeySpec key;
+    private final Map<String, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CredentialCache(@Value("${shop.security.credential-cache.max-size:10000}") int maxSize,
+                           @Value("${shop.security.credential-cache.ttl:5m}") Duration ttl,
+                           MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CredentialCache.this.maxSize;
+            }
+        };
+        this.hits = Counter.builder("shop.security.credential.cache")
+                .tag("result", "hit")
+                .description("Authentications served without a BCrypt check")
+                .register(meterRegistry);
+        this.misses = Counter.builder("shop.security.credential.cache")
+                .tag("result", "miss")
+                .description("Authentications that required a BCrypt check")
+                .register(meterRegistry);
+        Gauge.builder("shop.security.credential.cache.size", this, CredentialCache::size)
+                .register(meterRegistry);
+    }
+
+    public Authentication get(String username, String password) {
+        String cacheKey = keyFor(username, password);
+        synchronized (entries) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.authentication();
+            }
+            if (entry != null) {
+                entries.remove(cacheKey);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String username, String password, Authentication authentication) {
+        String cacheKey = keyFor(username, password);
+        synchronized (entries) {
+            entries.put(cacheKey, new Entry(username, authentication, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public void invalidate(String username) {
+        log.debug("Invalidating cached credentials of user: {}", username);
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.username().equals(username));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public double getHitCount() {
+        return hits.count();
+    }
+
+    public double getMissCount() {
+        return misses.count();
+    }
+
+    private String keyFor(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not compute credential cache key", e);
+        }
+    }
+
+    private record Entry(String username, Authentication authentication, long expiresAt) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.shop.service;
+
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.inventory.InventoryLedger;
+import com.example.shop.model.Order;
+import com.example.shop.model.Product;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+public class ExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportService.class);
+    private static final int FLUSH_EVERY = 500;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderArchive orderArchive;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private InventoryLedger inventoryLedger;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public void exportOrders(OutputStream out) throws IOException {
+        log.atInfo().log("Exporting all orders");
+        long count = write(Stream.concat(orderRepository.streamAll(), orderArchive.streamAll()), out, order -> { });
+        log.atInfo().addKeyValue("count", count).log("Exported orders");
+    }
+
+    @Transactional(readOnly = true)
+    public void exportProducts(OutputStream out) throws IOException {
+        log.atInfo().log("Exporting all products");
+        long count = write(productRepository.streamAll(), out, inventoryLedger::overlay);
+        log.atInfo().addKeyValue("count", count).log("Exported products");
+    }
+
+    private <T> long write(Stream<T> rows, OutputStream out, Consumer<T> beforeWrite) throws IOException {
+        // rows are flushed in batches below, not after each one
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count = 0;
+        try (rows; JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                T row = iterator.next();
+                entityManager.detach(row);
+                beforeWrite.accept(row);
+                writer.writeValue(generator, row);
+                if (++count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+        return count;
+    }
+}
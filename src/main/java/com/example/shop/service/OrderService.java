@@ -1,79 +1,422 @@
 package com.example.shop.service;
 
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.cache.ProductCache;
+import com.example.shop.dto.OrderBatchItemResult;
+import com.example.shop.etag.ETags;
+import com.example.shop.etag.ResourceVersions;
 import com.example.shop.exception.InsufficientStockException;
+import com.example.shop.exception.InvalidOrderException;
 import com.example.shop.exception.OrderNotFoundException;
 import com.example.shop.exception.OrderNotInProgressException;
+import com.example.shop.exception.PreconditionFailedException;
 import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.expiry.OrderExpiry;
+import com.example.shop.inventory.InventoryLedger;
+import com.example.shop.inventory.StockStrategy;
+import com.example.shop.metrics.OrderRejections;
 import com.example.shop.model.Order;
 import com.example.shop.model.Order.Status;
+import com.example.shop.model.OrderLine;
 import com.example.shop.model.Product;
+import com.example.shop.pagination.KeysetPagination;
+import com.example.shop.reporting.OpenOrderIndex;
+import com.example.shop.reporting.SalesAggregates;
 import com.example.shop.repository.OrderRepository;
 import com.example.shop.repository.ProductRepository;
+import com.example.shop.util.Transactions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.example.shop.etag.ResourceVersions.Resource.ORDERS;
+import static com.example.shop.etag.ResourceVersions.Resource.PRODUCTS;
 
 @Service
 public class OrderService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+    private static final int EXPIRY_BATCH_SIZE = 500;
     @Autowired
     private OrderRepository orderRepository;
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private InventoryLedger inventoryLedger;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private StockStrategy stockStrategy;
+    @Autowired
+    private SalesAggregates salesAggregates;
+    @Autowired
+    private OpenOrderIndex openOrderIndex;
+    @Autowired
+    private ResourceVersions resourceVersions;
+    @Autowired
+    private OrderExpiry orderExpiry;
+    @Autowired
+    private OrderArchive orderArchive;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderRejections orderRejections;
 
     public Order addOrder(Order order) {
-        log.info("Adding order: {}", order);
-        Product product = productRepository.findById(order.getProductId()).orElseThrow(() -> new ProductNotFoundException(order.getProductId()));
-        if (product.getStock() < order.getQuantity()) {
-            log.debug("Product available stock is: {}, while the requested order quantity is: {}", product.getStock(), order.getQuantity());
+        SortedMap<Long, Integer> quantities = quantities(order);
+        log.atInfo().addKeyValue("quantities", quantities).log("Adding order");
+        StockStrategy stock = stock();
+        if (!reserve(stock, quantities)) {
+            log.atDebug().addKeyValue("quantities", quantities).log("Insufficient stock");
+            orderRejections.insufficientStock();
             throw new InsufficientStockException();
         }
 
-        product.setStock(product.getStock() - order.getQuantity());
-        productRepository.save(product);
-
+        order.setLines(OrderLine.of(quantities));
         order.setStatus(Status.IN_PROGRESS);
-        return orderRepository.save(order);
+        Order savedOrder;
+        try {
+            savedOrder = orderRepository.save(order);
+        } catch (RuntimeException e) {
+            release(stock, quantities);
+            throw e;
+        } finally {
+            quantities.keySet().forEach(productId -> resourceVersions.changed(PRODUCTS, productId));
+        }
+        salesAggregates.added(savedOrder);
+        openOrderIndex.opened(savedOrder);
+        resourceVersions.changed(ORDERS, savedOrder.getId());
+        orderExpiry.schedule(savedOrder);
+        return savedOrder;
+    }
+
+    private StockStrategy stock() {
+        return inventoryLedger.isEnabled() ? inventoryLedger : stockStrategy;
+    }
+
+    // a single line goes through the single-product path every strategy is tuned for
+    private static boolean reserve(StockStrategy stock, SortedMap<Long, Integer> quantities) {
+        if (quantities.size() == 1) return stock.reserve(quantities.firstKey(), quantities.get(quantities.firstKey()));
+        return stock.reserveAll(quantities);
+    }
+
+    private static void release(StockStrategy stock, SortedMap<Long, Integer> quantities) {
+        if (quantities.size() == 1) {
+            stock.release(quantities.firstKey(), quantities.get(quantities.firstKey()));
+        } else {
+            stock.releaseAll(quantities);
+        }
+    }
+
+    /**
+     * Quantity per product, merging lines for the same product, in the ascending id order stock is taken in.
+     */
+    private static SortedMap<Long, Integer> quantities(Order order) {
+        if (order.getLines().isEmpty()) {
+            throw new InvalidOrderException("An order needs at least one line");
+        }
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : order.getLines()) {
+            if (line == null || line.getProductId() == null) {
+                throw new InvalidOrderException("Every order line needs a productId");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new InvalidOrderException("The line for product " + line.getProductId() + " needs a positive quantity");
+            }
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    @Transactional
+    public List<OrderBatchItemResult> addOrders(List<Order> orders) {
+        log.atInfo().addKeyValue("size", orders.size()).log("Adding order batch");
+        List<OrderBatchItemResult> results = new ArrayList<>(orders.size());
+        List<Order> accepted = new ArrayList<>(orders.size());
+
+        if (inventoryLedger.isEnabled()) {
+            // the ledger does not roll back with the batch: a failure at save, flush or commit returns its stock
+            Transactions.afterRollback(() -> accepted.forEach(order -> release(inventoryLedger, quantities(order))));
+            reserveFromLedger(orders, results, accepted);
+        } else {
+            reserveFromProducts(orders, results, accepted);
+        }
+
+        for (Order order : accepted) {
+            order.setStatus(Status.IN_PROGRESS);
+        }
+        orderRepository.saveAll(accepted).forEach(savedOrder -> {
+            salesAggregates.added(savedOrder);
+            openOrderIndex.opened(savedOrder);
+            resourceVersions.changed(ORDERS, savedOrder.getId());
+            savedOrder.getLines().forEach(line -> resourceVersions.changed(PRODUCTS, line.getProductId()));
+            orderExpiry.schedule(savedOrder);
+        });
+        return results;
+    }
+
+    private void reserveFromProducts(List<Order> orders, List<OrderBatchItemResult> results, List<Order> accepted) {
+        TreeSet<Long> productIds = orders.stream()
+                .flatMap(order -> order.getLines().stream())
+                .filter(Objects::nonNull)
+                .map(OrderLine::getProductId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, Product> products = productRepository.findAllByIdForUpdate(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            try {
+                SortedMap<Long, Integer> quantities = quantities(order);
+                String rejection = reserveFromProducts(quantities, products);
+                if (rejection == null) {
+                    order.setLines(OrderLine.of(quantities));
+                    results.add(OrderBatchItemResult.accepted(i, order));
+                    accepted.add(order);
+                } else {
+                    results.add(OrderBatchItemResult.rejected(i, order, rejection));
+                }
+            } catch (InvalidOrderException e) {
+                results.add(OrderBatchItemResult.rejected(i, order, e.getMessage()));
+            }
+        }
+        productRepository.saveAll(products.values());
+        products.keySet().forEach(productCache::invalidate);
+    }
+
+    /**
+     * Takes every line's quantity from the locked products, or nothing; returns why not.
+     */
+    private String reserveFromProducts(SortedMap<Long, Integer> quantities, Map<Long, Product> products) {
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null) return new ProductNotFoundException(line.getKey()).getMessage();
+            if (product.getStock() < line.getValue()) {
+                log.atDebug().addKeyValue("productId", product.getId()).addKeyValue("stock", product.getStock()).addKeyValue("quantity", line.getValue()).log("Insufficient stock");
+                orderRejections.insufficientStock();
+                return new InsufficientStockException().getMessage();
+            }
+        }
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            product.setStock(product.getStock() - quantity);
+        });
+        return null;
+    }
+
+    private void reserveFromLedger(List<Order> orders, List<OrderBatchItemResult> results, List<Order> accepted) {
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            try {
+                SortedMap<Long, Integer> quantities = quantities(order);
+                if (reserve(inventoryLedger, quantities)) {
+                    order.setLines(OrderLine.of(quantities));
+                    results.add(OrderBatchItemResult.accepted(i, order));
+                    accepted.add(order);
+                } else {
+                    orderRejections.insufficientStock();
+                    results.add(OrderBatchItemResult.rejected(i, order, new InsufficientStockException().getMessage()));
+                }
+            } catch (ProductNotFoundException | InvalidOrderException e) {
+                results.add(OrderBatchItemResult.rejected(i, order, e.getMessage()));
+            }
+        }
     }
 
     public Order findOrder(Long id) {
-        log.info("Finding order with Id: {}", id);
-        return orderRepository.findById(id).orElseThrow(() -> new OrderNotFoundException(id));
+        log.atInfo().addKeyValue("orderId", id).log("Finding order");
+        long generation = resourceVersions.generation(ORDERS);
+        Order order = orderRepository.findById(id).or(() -> orderArchive.find(id)).orElseThrow(() -> new OrderNotFoundException(id));
+        resourceVersions.remember(ORDERS, id, orderTag(order), generation);
+        return order;
+    }
+
+    /**
+     * ETag of the order as last served, or null if it has to be loaded to tell.
+     */
+    public String knownOrderTag(Long id) {
+        return resourceVersions.known(ORDERS, id);
+    }
+
+    public String orderTag(Order order) {
+        return ETags.of(order.getVersion());
+    }
+
+    public String ordersTag() {
+        return resourceVersions.collectionTag(ORDERS);
     }
 
     public List<Order> getAllOrders() {
-        log.info("Finding all orders");
+        log.atInfo().log("Finding all orders");
         return orderRepository.findAll();
     }
 
+    public Window<Order> getOrderPage(Long productId, Status status, Long after, Limit limit, Sort sort) {
+        log.atInfo().addKeyValue("productId", productId).addKeyValue("status", status).addKeyValue("size", limit.max()).addKeyValue("after", after).addKeyValue("sort", sort).log("Finding order page");
+        ScrollPosition position = KeysetPagination.after(after, sort,
+                () -> orderRepository.findById(after).or(() -> orderArchive.find(after)).orElseThrow(() -> new OrderNotFoundException(after)));
+        if (productId != null && status != null) return orderRepository.findByProductIdAndStatus(productId, status, position, limit, sort);
+        if (productId != null) return orderRepository.findByProductId(productId, position, limit, sort);
+        if (status != null) return orderRepository.findByStatus(status, position, limit, sort);
+        return orderRepository.findAllBy(position, limit, sort);
+    }
+
     public Order completeOrder(Long id) {
-        log.info("Completing order with Id: {}", id);
-        Order order = orderRepository.findById(id).orElseThrow(() -> new OrderNotFoundException(id));
-        if (Status.IN_PROGRESS != order.getStatus()) throw new OrderNotInProgressException(id);
+        return completeOrder(id, null);
+    }
+
+    public Order completeOrder(Long id, String ifMatch) {
+        log.atInfo().addKeyValue("orderId", id).log("Completing order");
+        Order order = orderRepository.findById(id).orElseThrow(() -> notInOrderTable(id));
+        String current = orderTag(order);
+        if (ifMatch != null && !ETags.matches(ifMatch, current, true)) {
+            throw new PreconditionFailedException("Order " + id + " has been modified, current ETag is " + current);
+        }
+        if (Status.IN_PROGRESS != order.getStatus()) throw notInProgress(id);
         order.setStatus(Status.COMPLETED);
-        return orderRepository.save(order);
+        Order completedOrder = orderRepository.save(order);
+        salesAggregates.moved(completedOrder, Status.IN_PROGRESS);
+        openOrderIndex.closed(completedOrder);
+        resourceVersions.changed(ORDERS, id);
+        return completedOrder;
     }
 
     public void deleteOrder(Long id) {
-        log.info("Deleting order with Id: {}", id);
-        orderRepository.findById(id).orElseThrow(() -> new OrderNotFoundException(id));
+        log.atInfo().addKeyValue("orderId", id).log("Deleting order");
+        Order order = orderRepository.findById(id).orElse(null);
+        if (order != null) {
+            orderRepository.deleteById(id);
+        } else {
+            order = orderArchive.delete(id).orElseThrow(() -> new OrderNotFoundException(id));
+        }
+        salesAggregates.removed(order);
+        openOrderIndex.closed(order);
+        resourceVersions.changed(ORDERS, id);
+    }
+
+    // archived orders are finished, they can be read and deleted but not changed
+    private RuntimeException notInOrderTable(Long id) {
+        return orderArchive.contains(id) ? notInProgress(id) : new OrderNotFoundException(id);
+    }
 
-        orderRepository.deleteById(id);
+    private OrderNotInProgressException notInProgress(Long id) {
+        orderRejections.notInProgress();
+        return new OrderNotInProgressException(id);
     }
 
     public Order cancelOrder(Long id) {
-        log.info("Cancelling order with Id: {}", id);
-        Order order = orderRepository.findById(id).orElseThrow(() -> new OrderNotFoundException(id));
-        if (Status.IN_PROGRESS != order.getStatus()) throw new OrderNotInProgressException(id);
-        Product product = productRepository.findById(order.getProductId()).orElseThrow(() -> new ProductNotFoundException(order.getProductId()));
+        log.atInfo().addKeyValue("orderId", id).log("Cancelling order");
+        Order order = orderRepository.findById(id).orElseThrow(() -> notInOrderTable(id));
+        if (Status.IN_PROGRESS != order.getStatus()) throw notInProgress(id);
 
-        product.setStock(product.getStock() + order.getQuantity());
-        productRepository.save(product);
+        Order cancelledOrder = cancel(order);
+        if (cancelledOrder == null) throw new ObjectOptimisticLockingFailureException(Order.class, id);
+        return cancelledOrder;
+    }
+
+    /**
+     * Saves the order as cancelled and gives its stock back in one transaction. The status is flushed first, so
+     * an order completed or cancelled in the meantime fails the version check before any stock moves, and the
+     * database stock strategies join the transaction, so a failed release rolls the status back with it. The
+     * in-memory ledger cannot roll back and only releases once the status is committed. Returns null if the
+     * order was changed since it was loaded.
+     */
+    private Order cancel(Order order) {
+        SortedMap<Long, Integer> quantities = quantities(order);
         order.setStatus(Status.CANCELLED);
-        return orderRepository.save(order);
+        Order cancelledOrder;
+        try {
+            cancelledOrder = transactionTemplate.execute(status -> {
+                Order savedOrder;
+                try {
+                    savedOrder = orderRepository.saveAndFlush(order);
+                } catch (OptimisticLockingFailureException e) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+                if (!inventoryLedger.isEnabled()) release(stockStrategy, quantities);
+                return savedOrder;
+            });
+        } catch (RuntimeException e) {
+            order.setStatus(Status.IN_PROGRESS);
+            throw e;
+        }
+        if (cancelledOrder == null) {
+            order.setStatus(Status.IN_PROGRESS);
+            return null;
+        }
+        if (inventoryLedger.isEnabled()) release(inventoryLedger, quantities);
+        quantities.keySet().forEach(productId -> resourceVersions.changed(PRODUCTS, productId));
+        salesAggregates.moved(cancelledOrder, Status.IN_PROGRESS);
+        openOrderIndex.closed(cancelledOrder);
+        resourceVersions.changed(ORDERS, cancelledOrder.getId());
+        return cancelledOrder;
+    }
+
+    @Scheduled(fixedDelayString = "${shop.orders.expiry.interval:1000}")
+    public void expireOrders() {
+        if (!orderExpiry.isEnabled()) return;
+        long[] due = orderExpiry.due(System.currentTimeMillis());
+        int expired = 0;
+        for (int from = 0; from < due.length; from += EXPIRY_BATCH_SIZE) {
+            List<Long> ids = Arrays.stream(due, from, Math.min(from + EXPIRY_BATCH_SIZE, due.length)).boxed().toList();
+            try {
+                expired += expireOrders(ids);
+            } catch (DataAccessException e) {
+                log.atError().addKeyValue("orders", ids.size()).addKeyValue("error", e.getMessage()).log("Order expiry failed, retrying orders later");
+                ids.forEach(orderExpiry::retry);
+            }
+        }
+        if (expired > 0) log.atInfo().addKeyValue("expired", expired).log("Expired orders");
+    }
+
+    /**
+     * Cancels those of the given orders that are still in progress and gives their stock back, the same way
+     * {@link #cancelOrder(Long)} does. An order completed or cancelled in the meantime keeps its stock; one whose
+     * cancellation failed is rolled back to in progress and retried later. Returns how many orders were cancelled.
+     */
+    public int expireOrders(List<Long> ids) {
+        int expired = 0;
+        for (Order order : orderRepository.findAllById(ids)) {
+            if (Status.IN_PROGRESS != order.getStatus()) continue;
+            try {
+                if (expire(order)) expired++;
+            } catch (DataAccessException e) {
+                log.atError().addKeyValue("orderId", order.getId()).addKeyValue("error", e.getMessage()).log("Order expiry failed");
+                orderExpiry.retry(order.getId());
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("orderId", order.getId()).addKeyValue("error", e.getMessage()).log("Order expiry failed");
+            }
+        }
+        return expired;
+    }
+
+    private boolean expire(Order order) {
+        if (cancel(order) != null) return true;
+        log.atDebug().addKeyValue("orderId", order.getId()).log("Order changed before it expired");
+        return false;
     }
-}
\ No newline at end of file
+}
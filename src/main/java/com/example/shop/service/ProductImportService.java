@@ -0,0 +1,321 @@
+package com.example.shop.service;
+
+import com.example.shop.dto.ProductImportError;
+import com.example.shop.dto.ProductImportResult;
+import com.example.shop.etag.ResourceVersions;
+import com.example.shop.exception.InvalidImportException;
+import com.example.shop.inventory.InventoryLedger;
+import com.example.shop.model.Product;
+import com.example.shop.search.ProductSearchIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.example.shop.etag.ResourceVersions.Resource.PRODUCTS;
+
+/**
+ * Bulk product import. The body is read one line at a time and valid rows are written in chunks, each
+ * chunk one JDBC batch in its own transaction, so only one chunk of rows is held at a time. Ids come from the
+ * product entity's own pooled sequence generator, which hits the sequence once per allocation block instead
+ * of once per row. A chunk the database rejects is retried row by row, so one bad row only fails itself.
+ * <p>
+ * Imported names are merged into the search index in one batch at the end; the names are all that is kept
+ * for the whole import, and the index holds on to them anyway.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+    private static final String INSERT = "insert into product (id, name, price, stock, version) values (?, ?, ?, ?, 0)";
+    static final int MAX_NAME_LENGTH = 255;
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format of(MediaType contentType) {
+            return TEXT_CSV.isCompatibleWith(contentType) ? CSV : NDJSON;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final BeforeExecutionGenerator idGenerator;
+    private final ObjectMapper objectMapper;
+    private final InventoryLedger inventoryLedger;
+    private final ProductSearchIndex productSearchIndex;
+    private final ResourceVersions resourceVersions;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+                                InventoryLedger inventoryLedger, ProductSearchIndex productSearchIndex,
+                                ResourceVersions resourceVersions,
+                                @Value("${shop.import.chunk-size:1000}") int chunkSize,
+                                @Value("${shop.import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.idGenerator = (BeforeExecutionGenerator) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel().getEntityDescriptor(Product.class).getGenerator();
+        this.objectMapper = objectMapper;
+        this.inventoryLedger = inventoryLedger;
+        this.productSearchIndex = productSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    public ProductImportResult importProducts(InputStream body, Format format) throws IOException {
+        log.atInfo().addKeyValue("format", format).log("Importing products");
+        ProductImportResult result = new ProductImportResult();
+        Map<Long, String> names = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            RowParser parser = format == Format.CSV ? new CsvRowParser(reader.readLine()) : this::parseJson;
+            long lineNumber = format == Format.CSV ? 1 : 0;
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    chunk.add(new Row(lineNumber, validate(parser.parse(line))));
+                } catch (RejectedRowException e) {
+                    reject(result, lineNumber, e.getMessage());
+                }
+                if (chunk.size() == chunkSize) {
+                    store(chunk, result, names);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                store(chunk, result, names);
+            }
+        } finally {
+            // committed chunks have to become searchable even if the rest of the body never arrives
+            if (!names.isEmpty()) productSearchIndex.indexAll(names);
+        }
+        log.atInfo().addKeyValue("imported", result.getImported()).addKeyValue("rejected", result.getRejected()).log("Imported products");
+        return result;
+    }
+
+    private void store(List<Row> chunk, ProductImportResult result, Map<Long, String> names) {
+        List<Row> stored = chunk;
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(chunk));
+        } catch (DataAccessException e) {
+            log.atWarn().addKeyValue("line", chunk.get(0).line()).addKeyValue("error", e.getMostSpecificCause().getMessage()).log("Import chunk failed, retrying row by row");
+            stored = new ArrayList<>(chunk.size());
+            for (Row row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(row)));
+                    stored.add(row);
+                } catch (DataAccessException rowFailure) {
+                    reject(result, row.line(), "Could not store product: " + rowFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+
+        result.setImported(result.getImported() + stored.size());
+        stored.forEach(row -> names.put(row.product().getId(), row.product().getName()));
+    }
+
+    private void insert(List<Row> rows) {
+        SharedSessionContractImplementor session = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                .unwrap(SharedSessionContractImplementor.class);
+        for (Row row : rows) {
+            row.product().setId((Long) idGenerator.generate(session, row.product(), null, EventType.INSERT));
+        }
+        jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int index) throws SQLException {
+                Product product = rows.get(index).product();
+                statement.setLong(1, product.getId());
+                statement.setString(2, product.getName());
+                statement.setDouble(3, product.getPrice());
+                statement.setInt(4, product.getStock());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        for (Row row : rows) {
+            inventoryLedger.track(row.product().getId(), row.product().getStock());
+        }
+        resourceVersions.added(PRODUCTS);
+    }
+
+    private void reject(ProductImportResult result, long line, String reason) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new ProductImportError(line, reason));
+        }
+    }
+
+    private Product parseJson(String line) {
+        try {
+            ImportedProduct row = objectMapper.readValue(line, ImportedProduct.class);
+            return new Product(row.name(), row.price() == null ? Double.NaN : row.price(), row.stock());
+        } catch (JsonProcessingException e) {
+            throw new RejectedRowException("Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static Product validate(Product product) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            throw new RejectedRowException("name is required");
+        }
+        if (product.getName().length() > MAX_NAME_LENGTH) {
+            throw new RejectedRowException("name must be at most " + MAX_NAME_LENGTH + " characters");
+        }
+        if (Double.isNaN(product.getPrice())) {
+            throw new RejectedRowException("price is required");
+        }
+        if (product.getPrice() < 0 || Double.isInfinite(product.getPrice())) {
+            throw new RejectedRowException("price must be a non-negative number");
+        }
+        if (product.getStock() == null) {
+            throw new RejectedRowException("stock is required");
+        }
+        if (product.getStock() < 0) {
+            throw new RejectedRowException("stock must not be negative");
+        }
+        return product;
+    }
+
+    private interface RowParser {
+        Product parse(String line);
+    }
+
+    /**
+     * Comma separated values with a header naming the name, price and stock columns in any order. Fields may
+     * be double-quoted, with "" for a quote inside; a quoted field cannot span lines.
+     */
+    private static final class CsvRowParser implements RowParser {
+        private final int nameColumn;
+        private final int priceColumn;
+        private final int stockColumn;
+
+        CsvRowParser(String header) {
+            if (header == null) throw new InvalidImportException("CSV import is empty, expected a header line");
+            List<String> columns;
+            try {
+                columns = split(header.startsWith("\uFEFF") ? header.substring(1) : header).stream()
+                        .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                        .toList();
+            } catch (RejectedRowException e) {
+                throw new InvalidImportException("CSV header is malformed: " + e.getMessage());
+            }
+            nameColumn = columns.indexOf("name");
+            priceColumn = columns.indexOf("price");
+            stockColumn = columns.indexOf("stock");
+            if (nameColumn < 0 || priceColumn < 0 || stockColumn < 0) {
+                throw new InvalidImportException("CSV header must name the name, price and stock columns, got " + columns);
+            }
+        }
+
+        @Override
+        public Product parse(String line) {
+            List<String> fields = split(line);
+            int columns = Math.max(nameColumn, Math.max(priceColumn, stockColumn)) + 1;
+            if (fields.size() < columns) {
+                throw new RejectedRowException("Expected " + columns + " columns, got " + fields.size());
+            }
+            String price = fields.get(priceColumn).trim();
+            String stock = fields.get(stockColumn).trim();
+            return new Product(fields.get(nameColumn).trim(), price.isEmpty() ? Double.NaN : number(price, "price"),
+                    stock.isEmpty() ? null : integer(stock));
+        }
+
+        private static double number(String value, String column) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new RejectedRowException(column + " is not a number: '" + value + "'");
+            }
+        }
+
+        private static int integer(String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new RejectedRowException("stock is not a whole number: '" + value + "'");
+            }
+        }
+
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) throw new RejectedRowException("Unterminated quoted field");
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private record Row(long line, Product product) {
+    }
+
+    private record ImportedProduct(String name, Double price, Integer stock) {
+    }
+
+    /**
+     * A row that is reported and skipped; thrown once per bad row, so it carries no stack trace.
+     */
+    private static final class RejectedRowException extends RuntimeException {
+        RejectedRowException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -1,14 +1,43 @@
 package com.example.shop.service;
 
+import com.example.shop.cache.ProductCache;
+import com.example.shop.dto.ProductPatch;
+import com.example.shop.dto.ProductPatchResult;
+import com.example.shop.dto.ProductPriceHistory;
+import com.example.shop.dto.ProductSearchResult;
+import com.example.shop.etag.ETags;
+import com.example.shop.etag.ResourceVersions;
+import com.example.shop.exception.InvalidPatchException;
+import com.example.shop.exception.InvalidPriceRangeException;
+import com.example.shop.exception.PreconditionFailedException;
 import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.inventory.InventoryLedger;
 import com.example.shop.model.Product;
+import com.example.shop.pagination.KeysetPagination;
+import com.example.shop.pricing.PriceHistory;
 import com.example.shop.repository.ProductRepository;
+import com.example.shop.search.ProductSearchIndex;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.example.shop.etag.ResourceVersions.Resource.PRODUCTS;
 
 @Service
 public class ProductService {
@@ -16,61 +45,322 @@ public class ProductService {
     private static final Logger log = LoggerFactory.getLogger(ProductService.class);
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private InventoryLedger inventoryLedger;
+    @Autowired
+    private ProductCache productCache;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private ResourceVersions resourceVersions;
+    @Autowired
+    private PriceHistory priceHistory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     public Product addProduct(Product product) {
-        log.info("Adding product: {}", product);
-        return productRepository.save(product);
+        log.atInfo().addKeyValue("product", product).log("Adding product");
+        Product savedProduct = productRepository.save(product);
+        inventoryLedger.track(savedProduct.getId(), savedProduct.getStock());
+        productSearchIndex.index(savedProduct.getId(), savedProduct.getName());
+        resourceVersions.changed(PRODUCTS, savedProduct.getId());
+        return savedProduct;
     }
 
     public Product findProduct(Long id) {
-        log.info("Finding product with Id: {}", id);
-        return productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+        log.atInfo().addKeyValue("productId", id).log("Finding product");
+        long generation = resourceVersions.generation(PRODUCTS);
+        Product product = productCache.get(id, key -> productRepository.findById(key).orElse(null));
+        if (product == null) throw new ProductNotFoundException(id);
+        // the cached instance is shared between requests, so the ledger stock goes on a copy
+        if (inventoryLedger.isEnabled()) product = inventoryLedger.overlay(new Product(product));
+        resourceVersions.remember(PRODUCTS, id, productTag(product), generation);
+        return product;
+    }
+
+    /**
+     * ETag of the product as last served, or null if it has to be loaded to tell.
+     */
+    public String knownProductTag(Long id) {
+        return resourceVersions.known(PRODUCTS, id);
+    }
+
+    public String productTag(Product product) {
+        if (!inventoryLedger.isEnabled()) return ETags.of(product.getVersion());
+        // ledger reservations change the served stock without touching the row version
+        return ETags.of(product.getVersion() + "-" + inventoryLedger.available(product.getId()));
+    }
+
+    public String productsTag() {
+        return resourceVersions.collectionTag(PRODUCTS);
     }
 
     public List<Product> getAllProducts() {
-        log.info("Finding all products");
-        return productRepository.findAll();
+        log.atInfo().log("Finding all products");
+        List<Product> products = productRepository.findAll();
+        products.forEach(inventoryLedger::overlay);
+        return products;
+    }
+
+    public List<ProductSearchResult> searchProducts(String query, Integer size) {
+        log.atInfo().addKeyValue("query", query).addKeyValue("size", size).log("Searching products");
+        return productSearchIndex.search(query, size);
+    }
+
+    public Window<Product> getProductPage(Long after, Limit limit, Sort sort) {
+        log.atInfo().addKeyValue("size", limit.max()).addKeyValue("after", after).addKeyValue("sort", sort).log("Finding product page");
+        ScrollPosition position = KeysetPagination.after(after, sort,
+                () -> productRepository.findById(after).orElseThrow(() -> new ProductNotFoundException(after)));
+        Window<Product> products = productRepository.findAllBy(position, limit, sort);
+        products.forEach(inventoryLedger::overlay);
+        return products;
     }
 
     public Product updateProduct(Long id, Product product) {
-        log.info("Updating product with Id: {}", id);
-        Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+        return updateProduct(id, product, null);
+    }
+
+    public Product updateProduct(Long id, Product product, String ifMatch) {
+        log.atInfo().addKeyValue("productId", id).log("Updating product");
+        // the price change is recorded in the same transaction, so no price is ever stored without its history
+        Product savedProduct = transactionTemplate.execute(status -> {
+            Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+            checkIfMatch(existingProduct, ifMatch);
 
-        existingProduct.setName(product.getName());
-        existingProduct.setPrice(product.getPrice());
-        existingProduct.setStock(product.getStock());
-        return productRepository.save(existingProduct);
+            double oldPrice = existingProduct.getPrice();
+            Integer oldStock = inventoryLedger.stock(existingProduct);
+            existingProduct.setName(product.getName());
+            existingProduct.setPrice(product.getPrice());
+            existingProduct.setStock(product.getStock());
+            Product updatedProduct = productRepository.save(existingProduct);
+            inventoryLedger.set(id, oldStock, product.getStock());
+            productCache.invalidate(id);
+            resourceVersions.changed(PRODUCTS, id);
+            if (Double.compare(oldPrice, updatedProduct.getPrice()) != 0) priceHistory.record(id, updatedProduct.getPrice());
+            return updatedProduct;
+        });
+        productSearchIndex.index(id, savedProduct.getName());
+        return savedProduct;
     }
 
     public Product updateProductName(Long id, String newName) {
-        log.info("Updating the name of the product with Id: {}", id);
+        return updateProductName(id, newName, null);
+    }
+
+    public Product updateProductName(Long id, String newName, String ifMatch) {
+        log.atInfo().addKeyValue("productId", id).log("Updating product name");
         Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+        checkIfMatch(existingProduct, ifMatch);
 
+        inventoryLedger.overlay(existingProduct);
         existingProduct.setName(newName);
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        productCache.invalidate(id);
+        resourceVersions.changed(PRODUCTS, id);
+        productSearchIndex.index(id, savedProduct.getName());
+        return savedProduct;
     }
 
     public Product updateProductPrice(Long id, double newPrice) {
-        log.info("Updating the price of the product with Id: {}", id);
-        Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
-        log.debug("Current price {} is going to be replaced by {}", existingProduct.getPrice(), newPrice);
+        return updateProductPrice(id, newPrice, null);
+    }
+
+    public Product updateProductPrice(Long id, double newPrice, String ifMatch) {
+        log.atInfo().addKeyValue("productId", id).log("Updating product price");
+        return transactionTemplate.execute(status -> {
+            Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+            checkIfMatch(existingProduct, ifMatch);
+            log.atDebug().addKeyValue("productId", id).addKeyValue("oldPrice", existingProduct.getPrice()).addKeyValue("newPrice", newPrice).log("Replacing product price");
 
-        existingProduct.setPrice(newPrice);
-        return productRepository.save(existingProduct);
+            double oldPrice = existingProduct.getPrice();
+            inventoryLedger.overlay(existingProduct);
+            existingProduct.setPrice(newPrice);
+            Product savedProduct = productRepository.save(existingProduct);
+            productCache.invalidate(id);
+            resourceVersions.changed(PRODUCTS, id);
+            if (Double.compare(oldPrice, newPrice) != 0) priceHistory.record(id, newPrice);
+            return savedProduct;
+        });
     }
 
     public Product updateProductStock(Long id, Integer newStock) {
-        log.info("Updating the stock of the product with Id: {}", id);
-        Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+        return updateProductStock(id, newStock, null);
+    }
+
+    public Product updateProductStock(Long id, Integer newStock, String ifMatch) {
+        log.atInfo().addKeyValue("productId", id).log("Updating product stock");
+        return transactionTemplate.execute(status -> {
+            Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+            checkIfMatch(existingProduct, ifMatch);
+
+            Integer oldStock = inventoryLedger.stock(existingProduct);
+            existingProduct.setStock(newStock);
+            Product savedProduct = productRepository.save(existingProduct);
+            inventoryLedger.set(id, oldStock, newStock);
+            productCache.invalidate(id);
+            resourceVersions.changed(PRODUCTS, id);
+            return savedProduct;
+        });
+    }
+
+    /**
+     * Applies a JSON merge patch of any of name, price and stock in one transaction. Only fields that differ
+     * from the stored product are set, and the flush at commit writes just those columns.
+     */
+    public Product patchProduct(Long id, JsonNode patch, String ifMatch) {
+        log.atInfo().addKeyValue("productId", id).log("Patching product");
+        ProductPatch changes = toPatch(patch);
+        Product patchedProduct = transactionTemplate.execute(status -> {
+            Product existingProduct = productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
+            checkIfMatch(existingProduct, ifMatch);
+            Integer oldStock = inventoryLedger.stock(existingProduct);
+            applyPatch(existingProduct, changes);
+            inventoryLedger.set(id, oldStock, changes.getStock());
+            return existingProduct;
+        });
+        inventoryLedger.overlay(patchedProduct);
+        return patchedProduct;
+    }
+
+    /**
+     * Applies merge patches to many products in one transaction, keyed by product id. A patch for a missing
+     * product or with invalid fields is rejected on its own and does not keep the others from being applied.
+     */
+    public List<ProductPatchResult> patchProducts(JsonNode patches) {
+        if (patches == null || !patches.isObject()) {
+            throw new InvalidPatchException("A bulk patch must be a JSON object of product patches keyed by product id");
+        }
+        Map<Long, JsonNode> patchesById = new LinkedHashMap<>();
+        patches.fields().forEachRemaining(entry -> patchesById.put(productId(entry.getKey()), entry.getValue()));
+        log.atInfo().addKeyValue("size", patchesById.size()).log("Patching products");
 
-        existingProduct.setStock(newStock);
-        return productRepository.save(existingProduct);
+        List<ProductPatchResult> results = transactionTemplate.execute(status -> {
+            Map<Long, Product> products = productRepository.findAllById(patchesById.keySet()).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            List<ProductPatchResult> patched = new ArrayList<>(patchesById.size());
+            patchesById.forEach((id, patch) -> {
+                Product product = products.get(id);
+                if (product == null) {
+                    patched.add(ProductPatchResult.rejected(id, new ProductNotFoundException(id).getMessage()));
+                    return;
+                }
+                try {
+                    ProductPatch changes = toPatch(patch);
+                    Integer oldStock = inventoryLedger.stock(product);
+                    applyPatch(product, changes);
+                    inventoryLedger.set(id, oldStock, changes.getStock());
+                    patched.add(ProductPatchResult.accepted(product));
+                } catch (InvalidPatchException e) {
+                    patched.add(ProductPatchResult.rejected(id, e.getMessage()));
+                }
+            });
+            return patched;
+        });
+        results.forEach(result -> inventoryLedger.overlay(result.getProduct()));
+        return results;
     }
 
     public void deleteProduct(Long id) {
-        log.info("Deleting product with Id: {}", id);
+        log.atInfo().addKeyValue("productId", id).log("Deleting product");
         productRepository.findById(id).orElseThrow(() -> new ProductNotFoundException(id));
 
         productRepository.deleteById(id);
+        productCache.invalidate(id);
+        resourceVersions.changed(PRODUCTS, id);
+        inventoryLedger.remove(id);
+        productSearchIndex.remove(id);
+        priceHistory.remove(id);
+    }
+
+    public ProductPriceHistory getPriceHistory(Long id, Instant from, Instant to) {
+        log.atInfo().addKeyValue("productId", id).addKeyValue("from", from).addKeyValue("to", to).log("Finding product price history");
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidPriceRangeException("Price range starts at " + from + ", after its end at " + to);
+        }
+        if (productCache.get(id, key -> productRepository.findById(key).orElse(null)) == null) throw new ProductNotFoundException(id);
+        return new ProductPriceHistory(id, priceHistory.between(id, from, to));
+    }
+
+    // sets only what differs, so an unchanged field stays out of the UPDATE and an unchanged product out of the flush
+    private void applyPatch(Product product, ProductPatch patch) {
+        Long id = product.getId();
+        boolean changed = false;
+        if (patch.getName() != null && !patch.getName().equals(product.getName())) {
+            product.setName(patch.getName());
+            productSearchIndex.index(id, patch.getName());
+            changed = true;
+        }
+        if (patch.getPrice() != null && Double.compare(patch.getPrice(), product.getPrice()) != 0) {
+            product.setPrice(patch.getPrice());
+            priceHistory.record(id, patch.getPrice());
+            changed = true;
+        }
+        if (patch.getStock() != null && !patch.getStock().equals(product.getStock())) {
+            product.setStock(patch.getStock());
+            changed = true;
+        }
+        if (changed) {
+            productCache.invalidate(id);
+            resourceVersions.changed(PRODUCTS, id);
+        }
+    }
+
+    private static ProductPatch toPatch(JsonNode patch) {
+        if (patch == null || !patch.isObject()) throw new InvalidPatchException("A product patch must be a JSON object");
+        ProductPatch changes = new ProductPatch();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            if (!name.equals("name") && !name.equals("price") && !name.equals("stock")) {
+                throw new InvalidPatchException(name + " cannot be patched");
+            }
+            if (value.isNull()) throw new InvalidPatchException(name + " cannot be removed");
+            switch (name) {
+                case "name" -> {
+                    if (!value.isTextual() || value.asText().isBlank()) {
+                        throw new InvalidPatchException("name must be a non-blank string");
+                    }
+                    if (value.asText().length() > ProductImportService.MAX_NAME_LENGTH) {
+                        throw new InvalidPatchException("name must be at most " + ProductImportService.MAX_NAME_LENGTH + " characters");
+                    }
+                    changes.setName(value.asText());
+                }
+                case "price" -> {
+                    if (!value.isNumber() || value.asDouble() < 0 || Double.isInfinite(value.asDouble())) {
+                        throw new InvalidPatchException("price must be a non-negative number");
+                    }
+                    changes.setPrice(value.asDouble());
+                }
+                default -> {
+                    if (!value.isIntegralNumber() || !value.canConvertToInt() || value.asInt() < 0) {
+                        throw new InvalidPatchException("stock must be a non-negative integer");
+                    }
+                    changes.setStock(value.asInt());
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static Long productId(String key) {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            throw new InvalidPatchException(key + " is not a product id");
+        }
+    }
+
+    /**
+     * Rejects the write if the client's If-Match no longer names the stored version. The entity is saved
+     * with the version it was loaded with, so a write landing in between still fails the version check.
+     */
+    private void checkIfMatch(Product product, String ifMatch) {
+        if (ifMatch == null) return;
+        String current = productTag(product);
+        if (!ETags.matches(ifMatch, current, true)) {
+            throw new PreconditionFailedException("Product " + product.getId() + " has been modified, current ETag is " + current);
+        }
     }
-}
\ No newline at end of file
+}
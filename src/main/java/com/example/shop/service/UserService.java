@@ -2,6 +2,7 @@ package com.example.shop.service;
 
 import com.example.shop.model.User;
 import com.example.shop.repository.UserRepository;
+import com.example.shop.security.CredentialCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -18,9 +19,14 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private CredentialCache credentialCache;
+
     public User createUser(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        credentialCache.invalidate(savedUser.getUsername());
+        return savedUser;
     }
 
     public Optional<User> findByUsername(String username) {
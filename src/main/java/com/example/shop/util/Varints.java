@@ -0,0 +1,48 @@
+package com.example.shop.util;
+
+/**
+ * Unsigned LEB128 varints, seven bits per byte with the high bit set on all but the last, and zigzag encoding
+ * so that small negative numbers stay short too. A long takes at most 10 bytes.
+ */
+public final class Varints {
+
+    public static final int MAX_LENGTH = 10;
+
+    private Varints() {
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the value at the position and returns the position after it.
+     */
+    public static int write(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Reads the value at {@code position[0]} and moves the position past it.
+     */
+    public static long read(byte[] buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.shop.archive;
+
+import com.example.shop.model.OrderLine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OrderArchiveTest {
+
+    @Test
+    public void testPackedLinesReadBack() {
+        List<OrderLine> lines = List.of(new OrderLine(1_000_000L, 3), new OrderLine(17L, 1),
+                new OrderLine(Long.MAX_VALUE, Integer.MAX_VALUE), new OrderLine(1_000_001L, 250));
+
+        assertEquals(lines, OrderArchive.unpack(OrderArchive.pack(lines)));
+        assertEquals(List.of(), OrderArchive.unpack(OrderArchive.pack(List.of())));
+    }
+
+    @Test
+    public void testSingleLineIsSmall() {
+        assertEquals(5, OrderArchive.pack(List.of(new OrderLine(123_456L, 2))).length);
+    }
+}
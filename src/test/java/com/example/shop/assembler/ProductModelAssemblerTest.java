@@ -0,0 +1,56 @@
+package com.example.shop.assembler;
+
+import com.example.shop.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProductModelAssemblerTest {
+
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        request.setServerName("shop.example.com");
+        request.setServerPort(8443);
+        request.setScheme("https");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        product = new Product("Test Product", 10.0, 100);
+        product.setId(42L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testPrecompiledLinksMatchMethodOnLinks() {
+        EntityModel<Product> precompiled = new ProductModelAssembler(true).toModel(product);
+        EntityModel<Product> resolved = new ProductModelAssembler(false).toModel(product);
+
+        assertEquals(resolved.getLinks().toString(), precompiled.getLinks().toString());
+        assertEquals("https://shop.example.com:8443/products/42", precompiled.getRequiredLink("self").getHref());
+    }
+
+    @Test
+    public void testPrecompiledLinksReusedWithinRequest() {
+        ProductModelAssembler assembler = new ProductModelAssembler(true);
+        Product other = new Product("Other Product", 1.0, 1);
+        other.setId(43L);
+
+        EntityModel<Product> first = assembler.toModel(product);
+        EntityModel<Product> second = assembler.toModel(other);
+
+        assertEquals("https://shop.example.com:8443/products/43", second.getRequiredLink("self").getHref());
+        assertEquals(first.getRequiredLink("products"), second.getRequiredLink("products"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.shop.etag;
+
+import com.example.shop.etag.ResourceVersions.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResourceVersionsTest {
+
+    private ResourceVersions resourceVersions;
+
+    @BeforeEach
+    public void setUp() {
+        resourceVersions = new ResourceVersions(100);
+    }
+
+    @Test
+    public void testRememberAndChange() {
+        long generation = resourceVersions.generation(Resource.PRODUCTS);
+        resourceVersions.remember(Resource.PRODUCTS, 1L, "\"3\"", generation);
+        String collectionTag = resourceVersions.collectionTag(Resource.PRODUCTS);
+
+        assertEquals("\"3\"", resourceVersions.known(Resource.PRODUCTS, 1L));
+        assertNull(resourceVersions.known(Resource.ORDERS, 1L));
+
+        resourceVersions.changed(Resource.PRODUCTS, 1L);
+
+        assertNull(resourceVersions.known(Resource.PRODUCTS, 1L));
+        assertNotEquals(collectionTag, resourceVersions.collectionTag(Resource.PRODUCTS));
+    }
+
+    @Test
+    public void testTagReadBeforeAWriteIsNotRemembered() {
+        long generation = resourceVersions.generation(Resource.ORDERS);
+        resourceVersions.changed(Resource.ORDERS, 2L);
+
+        resourceVersions.remember(Resource.ORDERS, 1L, "\"0\"", generation);
+
+        assertNull(resourceVersions.known(Resource.ORDERS, 1L));
+    }
+
+    @Test
+    public void testChangeInTransactionBumpsAfterCommit() {
+        String collectionTag = resourceVersions.collectionTag(Resource.PRODUCTS);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            resourceVersions.changed(Resource.PRODUCTS, 1L);
+            assertEquals(collectionTag, resourceVersions.collectionTag(Resource.PRODUCTS));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNotEquals(collectionTag, resourceVersions.collectionTag(Resource.PRODUCTS));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(ETags.matches("\"1\", \"2\"", "\"2\"", true));
+        assertTrue(ETags.matches("*", "\"2\"", true));
+        assertTrue(ETags.matches("W/\"2\"", "\"2\"", false));
+        assertFalse(ETags.matches("W/\"2\"", "\"2\"", true));
+        assertFalse(ETags.matches("\"1\"", "\"2\"", false));
+        assertFalse(ETags.matches(null, "\"2\"", false));
+        assertFalse(ETags.matches("\"2\"", null, false));
+    }
+}
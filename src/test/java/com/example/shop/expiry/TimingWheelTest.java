@@ -0,0 +1,105 @@
+package com.example.shop.expiry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimingWheel(TICK, 0);
+    }
+
+    private long[] advance(long nowMillis) {
+        List<Long> due = new ArrayList<>();
+        wheel.advance(nowMillis, due::add);
+        return due.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    @Test
+    public void testTimerIsDueOnTheTickOfItsDeadline() {
+        wheel.schedule(1, 5 * TICK);
+        wheel.schedule(2, 5 * TICK + 1);
+
+        assertArrayEquals(new long[0], advance(5 * TICK - 1));
+        assertArrayEquals(new long[]{1}, advance(5 * TICK));
+        assertArrayEquals(new long[0], advance(6 * TICK - 1));
+        assertArrayEquals(new long[]{2}, advance(6 * TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadlineIsDueOnTheNextTick() {
+        advance(10 * TICK);
+        wheel.schedule(1, 3 * TICK);
+
+        assertArrayEquals(new long[0], advance(10 * TICK + TICK - 1));
+        assertArrayEquals(new long[]{1}, advance(11 * TICK));
+    }
+
+    @Test
+    public void testTimersOnHigherLevelsMoveDownUntilDue() {
+        long[] deadlines = {63, 64, 65, 4095, 4096, 4097, 300_000, 16_777_217};
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.schedule(i, deadlines[i] * TICK);
+        }
+
+        for (int i = 0; i < deadlines.length; i++) {
+            assertArrayEquals(new long[0], advance((deadlines[i] - 1) * TICK), "before deadline " + deadlines[i]);
+            assertArrayEquals(new long[]{i}, advance(deadlines[i] * TICK), "at deadline " + deadlines[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testManyTimersAreEachDueOnceAndNeverEarly() {
+        Random random = new Random(42);
+        int timers = 1_000_000;
+        long[] deadlines = new long[timers];
+        long start = 1_234 * TICK;
+        wheel = new TimingWheel(TICK, start);
+        for (int i = 0; i < timers; i++) {
+            deadlines[i] = start + random.nextLong(1, 200_000) * TICK;
+            wheel.schedule(i, deadlines[i]);
+        }
+        assertEquals(timers, wheel.size());
+
+        boolean[] fired = new boolean[timers];
+        int[] count = {0};
+        for (long now = start; wheel.size() > 0; now += 97 * TICK) {
+            long previous = now - 97 * TICK;
+            long current = now;
+            wheel.advance(now, id -> {
+                int timer = (int) id;
+                assertTrue(!fired[timer] && deadlines[timer] <= current && deadlines[timer] > previous);
+                fired[timer] = true;
+                count[0]++;
+            });
+        }
+        assertEquals(timers, count[0]);
+    }
+
+    @Test
+    public void testIdleWheelSkipsAheadAndClearDropsTimers() {
+        advance(1_000_000_000L * TICK);
+        wheel.schedule(1, 1_000_000_001L * TICK);
+        assertArrayEquals(new long[]{1}, advance(1_000_000_001L * TICK));
+
+        wheel.schedule(2, 1_000_000_005L * TICK);
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertArrayEquals(new long[0], advance(1_000_000_010L * TICK));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.shop.idempotency;
+
+import com.example.shop.exception.IdempotencyKeyInProgressException;
+import com.example.shop.exception.IdempotencyKeyMismatchException;
+import com.example.shop.exception.InsufficientStockException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdempotencyStoreTest {
+
+    private IdempotencyStore idempotencyStore;
+
+    private AtomicInteger executions;
+
+    @BeforeEach
+    public void setUp() {
+        idempotencyStore = new IdempotencyStore(100, Duration.ofMinutes(10), Duration.ofSeconds(5), new SimpleMeterRegistry());
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    public void testExecute_replaysCompletedResult() {
+        IdempotencyStore.Result<Integer> first = idempotencyStore.execute("key", "payload", executions::incrementAndGet);
+        IdempotencyStore.Result<Integer> second = idempotencyStore.execute("key", "payload", executions::incrementAndGet);
+
+        assertEquals(1, first.value());
+        assertFalse(first.replayed());
+        assertEquals(1, second.value());
+        assertTrue(second.replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testExecute_differentPayload() {
+        idempotencyStore.execute("key", "payload", executions::incrementAndGet);
+
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyStore.execute("key", "other payload", executions::incrementAndGet));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testExecute_failureIsNotRemembered() {
+        assertThrows(InsufficientStockException.class, () -> idempotencyStore.execute("key", "payload", () -> {
+            throw new InsufficientStockException();
+        }));
+
+        IdempotencyStore.Result<Integer> retry = idempotencyStore.execute("key", "payload", executions::incrementAndGet);
+        assertEquals(1, retry.value());
+        assertFalse(retry.replayed());
+    }
+
+    @Test
+    public void testExecute_errorIsNotRemembered() {
+        assertThrows(StackOverflowError.class, () -> idempotencyStore.execute("key", "payload", () -> {
+            throw new StackOverflowError();
+        }));
+
+        IdempotencyStore.Result<Integer> retry = idempotencyStore.execute("key", "payload", executions::incrementAndGet);
+        assertEquals(1, retry.value());
+        assertFalse(retry.replayed());
+    }
+
+    @Test
+    public void testExecute_concurrentDuplicateWaitsForFirst() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CompletableFuture<IdempotencyStore.Result<Integer>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "payload", () -> {
+                    started.countDown();
+                    await(proceed);
+                    return executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<IdempotencyStore.Result<Integer>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "payload", executions::incrementAndGet));
+        assertFalse(duplicate.isDone());
+        proceed.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).value());
+        assertEquals(1, duplicate.get(5, TimeUnit.SECONDS).value());
+        assertTrue(duplicate.get().replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testExecute_waitTimesOut() throws Exception {
+        idempotencyStore = new IdempotencyStore(100, Duration.ofMinutes(10), Duration.ofMillis(50), new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CompletableFuture<IdempotencyStore.Result<Integer>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("key", "payload", () -> {
+                    started.countDown();
+                    await(proceed);
+                    return executions.incrementAndGet();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> idempotencyStore.execute("key", "payload", executions::incrementAndGet));
+        proceed.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).value());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.shop.integrationTests;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testPrometheusScrapeExposesShopMetrics() throws Exception {
+        mockMvc.perform(get("/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/products/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape).contains("http_server_requests_seconds_bucket");
+        assertThat(scrape).contains("uri=\"/products\"");
+        assertThat(scrape).containsPattern("spring_data_repository_invocations_seconds_count\\{[^}]*method=\"findAllBy\",repository=\"ProductRepository\",state=\"SUCCESS\"");
+        assertThat(scrape).containsPattern("spring_data_repository_invocations_seconds\\{[^}]*quantile=\"0.95\"");
+        assertThat(scrape).contains("shop_orders_in_progress");
+        assertThat(scrape).contains("shop_orders_rejected_total{reason=\"insufficient_stock\"");
+    }
+}
@@ -0,0 +1,476 @@
+package com.example.shop.integrationTests;
+
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.expiry.OrderExpiry;
+import com.example.shop.model.Order;
+import com.example.shop.model.Product;
+import com.example.shop.repository.OrderRepository;
+import com.example.shop.repository.ProductRepository;
+import com.example.shop.representation.CompactJson;
+import com.example.shop.service.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OrderIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderExpiry orderExpiry;
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        product = productRepository.save(new Product("ProductName", 19.99, 50));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        orderRepository.findAll().stream()
+                .filter(order -> order.getLines().stream().anyMatch(line -> product.getId().equals(line.getProductId())))
+                .forEach(orderRepository::delete);
+        productRepository.deleteById(product.getId());
+    }
+
+    private String orderJson(int quantity) {
+        return "{ \"productId\": " + product.getId() + ", \"quantity\": " + quantity + " }";
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testAddOrder_idempotencyKeyReplaysFirstResult() throws Exception {
+        MvcResult first = mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(5)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn();
+
+        MvcResult retry = mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(5)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn();
+
+        assertThat(retry.getResponse().getHeader("Location")).isEqualTo(first.getResponse().getHeader("Location"));
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(45);
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testAddOrder_idempotencyKeyReusedForDifferentOrder() throws Exception {
+        mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(5)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(6)))
+                .andExpect(status().isUnprocessableEntity());
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(45);
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testAddOrder_withoutIdempotencyKey() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(orderJson(5)))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        }
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(40);
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    public void testSalesReportFollowsOrderLifecycle() throws Exception {
+        MvcResult created = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(5)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(3)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put(created.getResponse().getHeader("Location") + "/complete"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/reports/sales/{productId}", product.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statuses.IN_PROGRESS.orders").value(1))
+                .andExpect(jsonPath("$.statuses.IN_PROGRESS.quantity").value(3))
+                .andExpect(jsonPath("$.statuses.COMPLETED.orders").value(1))
+                .andExpect(jsonPath("$.statuses.COMPLETED.quantity").value(5))
+                .andExpect(jsonPath("$.statuses.CANCELLED.orders").value(0));
+
+        mockMvc.perform(post("/reports/sales/rebuild"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/reports/sales/{productId}", product.getId()))
+                .andExpect(jsonPath("$.statuses.IN_PROGRESS.quantity").value(3))
+                .andExpect(jsonPath("$.statuses.COMPLETED.quantity").value(5));
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testOrderConditionalRequests() throws Exception {
+        String location = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(1)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+
+        String etag = mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get(location).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        mockMvc.perform(put(location + "/complete").header("If-Match", "\"7\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put(location + "/complete").header("If-Match", etag))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("ETag", "\"1\""));
+
+        mockMvc.perform(get(location).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testProductCollectionTagChangesWithOrders() throws Exception {
+        String etag = mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/products").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(1)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/products").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testGetOrders_filteredByProductAndStatus() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(orderJson(1)))
+                    .andExpect(status().isCreated());
+        }
+        MvcResult completed = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(2)))
+                .andReturn();
+        mockMvc.perform(put(completed.getResponse().getHeader("Location") + "/complete"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/orders")
+                        .param("productId", product.getId().toString())
+                        .param("status", "IN_PROGRESS")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.orderList.length()").value(2))
+                .andExpect(jsonPath("$._embedded.orderList[*].quantity", everyItem(is(1))))
+                .andExpect(jsonPath("$._links.next.href", containsString("productId=" + product.getId())))
+                .andExpect(jsonPath("$._links.next.href", containsString("status=IN_PROGRESS")));
+
+        mockMvc.perform(get("/orders")
+                        .param("productId", product.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.orderList.length()").value(4));
+
+        mockMvc.perform(get("/orders")
+                        .param("productId", product.getId().toString())
+                        .param("status", "COMPLETED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.orderList.length()").value(1))
+                .andExpect(jsonPath("$._embedded.orderList[0].quantity").value(2));
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testGetOrdersCompact() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(orderJson(1)))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/orders")
+                        .param("productId", product.getId().toString())
+                        .param("size", "1")
+                        .param("fields", "quantity,status")
+                        .accept(CompactJson.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"quantity\":1,\"status\":\"IN_PROGRESS\"}]", true))
+                .andExpect(header().string("Link", allOf(containsString("fields=quantity%2Cstatus"), not(containsString("{")))));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    public void testAddOrder_multipleLines() throws Exception {
+        Product second = productRepository.save(new Product("SecondProduct", 4.5, 3));
+        try {
+            String basket = "{ \"lines\": [ { \"productId\": " + second.getId() + ", \"quantity\": 3 },"
+                    + " { \"productId\": " + product.getId() + ", \"quantity\": 2 } ] }";
+            String location = mockMvc.perform(post("/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(basket))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.lines.length()").value(2))
+                    .andExpect(jsonPath("$.lines[0].productId").value(product.getId()))
+                    .andExpect(jsonPath("$.quantity").value(5))
+                    .andReturn().getResponse().getHeader("Location");
+            assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(48);
+            assertThat(productRepository.findById(second.getId()).orElseThrow().getStock()).isEqualTo(0);
+
+            // the second line cannot be served, so the first one must not be taken either
+            mockMvc.perform(post("/orders")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(basket.replace("\"quantity\": 3", "\"quantity\": 1")))
+                    .andExpect(status().isNotAcceptable());
+            assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(48);
+
+            mockMvc.perform(get("/orders").param("productId", second.getId().toString()))
+                    .andExpect(jsonPath("$._embedded.orderList.length()").value(1));
+            mockMvc.perform(get("/reports/sales/{productId}", second.getId()))
+                    .andExpect(jsonPath("$.statuses.IN_PROGRESS.quantity").value(3));
+
+            mockMvc.perform(delete(location + "/cancel"))
+                    .andExpect(status().isCreated());
+            assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(50);
+            assertThat(productRepository.findById(second.getId()).orElseThrow().getStock()).isEqualTo(3);
+        } finally {
+            productRepository.deleteById(second.getId());
+        }
+    }
+
+    @Test
+    public void testConcurrentCancelAndCompleteReleaseStockOnce() throws Exception {
+        int orders = 10;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            ids.add(orderService.addOrder(new Order(product.getId(), 2, null)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (Long id : ids) {
+                // two cancels and a complete race for every order; exactly one of them may win
+                CountDownLatch start = new CountDownLatch(1);
+                List<Callable<Object>> calls = List.of(
+                        () -> orderService.cancelOrder(id),
+                        () -> orderService.cancelOrder(id),
+                        () -> orderService.completeOrder(id));
+                List<Future<Object>> results = new ArrayList<>();
+                for (Callable<Object> call : calls) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return call.call();
+                    }));
+                }
+                start.countDown();
+                for (Future<Object> result : results) {
+                    try {
+                        result.get(30, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        // the losers fail with a version conflict or see the order already finished
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long completed = orderRepository.findAllById(ids).stream()
+                .filter(order -> order.getStatus() == Order.Status.COMPLETED)
+                .count();
+        assertThat(orderRepository.findAllById(ids)).allMatch(order -> order.getStatus() != Order.Status.IN_PROGRESS);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(50 - 2 * (int) completed);
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testAddOrder_withoutLines() throws Exception {
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"lines\": [] }"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetOrders_unknownStatus() throws Exception {
+        mockMvc.perform(get("/orders").param("status", "SHIPPED"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testExpiredOrderGivesBackItsStock() throws Exception {
+        int pending = orderExpiry.pending();
+        String location = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(20)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.createdAt").isNotEmpty())
+                .andReturn().getResponse().getHeader("Location");
+        Long orderId = Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+        assertThat(orderExpiry.pending()).isEqualTo(pending + 1);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(30);
+
+        assertThat(orderService.expireOrders(List.of(orderId))).isEqualTo(1);
+        assertThat(orderRepository.findById(orderId).orElseThrow().getStatus()).isEqualTo(Order.Status.CANCELLED);
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(50);
+
+        // the timer is still there, but the order is no longer in progress
+        assertThat(orderService.expireOrders(List.of(orderId))).isZero();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getStock()).isEqualTo(50);
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    public void testArchivedOrderStaysReadable() throws Exception {
+        String location = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(5)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        String etag = mockMvc.perform(put(location + "/complete"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("ETag");
+        Long orderId = Long.valueOf(location.substring(location.lastIndexOf('/') + 1));
+        jdbcTemplate.update("update product_order set created_at = ? where id = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofDays(30))), orderId);
+
+        assertThat(orderArchive.archive()).isEqualTo(1);
+        assertThat(orderRepository.findById(orderId)).isEmpty();
+
+        mockMvc.perform(get(location))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.productId").value(product.getId()))
+                .andExpect(jsonPath("$.quantity").value(5));
+        mockMvc.perform(post("/reports/sales/rebuild"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/reports/sales/{productId}", product.getId()))
+                .andExpect(jsonPath("$.statuses.COMPLETED.quantity").value(5));
+        mockMvc.perform(delete(location + "/cancel"))
+                .andExpect(status().isNotAcceptable());
+
+        mockMvc.perform(delete(location))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(location))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/reports/sales/{productId}", product.getId()))
+                .andExpect(jsonPath("$.statuses.COMPLETED.quantity").value(0));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    public void testOpenOrdersReport() throws Exception {
+        String first = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(orderJson(1)))
+                .andReturn().getResponse().getHeader("Location");
+        mockMvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + orderJson(2) + "]"))
+                .andExpect(jsonPath("$[0].status").value("ACCEPTED"));
+        Long firstId = Long.valueOf(first.substring(first.lastIndexOf('/') + 1));
+        Long secondId = orderRepository.findAll().stream()
+                .filter(order -> product.getId().equals(order.getProductId()) && order.getQuantity() == 2)
+                .findFirst().orElseThrow().getId();
+
+        mockMvc.perform(get("/reports/open-orders/{productId}", product.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderIds.length()").value(2))
+                .andExpect(jsonPath("$.orderIds[0]").value(firstId))
+                .andExpect(jsonPath("$.orderIds[1]").value(secondId));
+
+        mockMvc.perform(put(first + "/complete"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/reports/open-orders/{productId}", product.getId()))
+                .andExpect(jsonPath("$.orderIds.length()").value(1))
+                .andExpect(jsonPath("$.orderIds[0]").value(secondId));
+
+        mockMvc.perform(delete("/orders/{id}/cancel", secondId))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/reports/open-orders/{productId}", product.getId()))
+                .andExpect(jsonPath("$.orderIds.length()").value(0));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.shop.integrationTests;
 
 import com.example.shop.model.Product;
+import com.example.shop.representation.CompactJson;
 import com.example.shop.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -8,18 +9,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -33,6 +44,9 @@ public class ProductIntegrationTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private Product product;
 
     @BeforeEach
@@ -57,6 +71,189 @@ public class ProductIntegrationTest {
         assertThat(responseBody).contains("ProductName");
     }
 
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductsPage() throws Exception {
+        productRepository.save(new Product("SecondProduct", 5.0, 10));
+
+        mockMvc.perform(get("/products?size=1&after=" + product.getId())
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.productList.length()").value(1))
+                .andExpect(jsonPath("$._embedded.productList[0].name").value("SecondProduct"));
+
+        mockMvc.perform(get("/products?size=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._links.next.href").exists());
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductsSortedByPrice() throws Exception {
+        productRepository.save(new Product("CheapProduct", 0.01, 10));
+
+        mockMvc.perform(get("/products?size=1&sort=price")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.productList[0].name").value("CheapProduct"));
+
+        mockMvc.perform(get("/products?size=1&sort=price,desc")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.productList[0].name").value("ProductName"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductsCompact() throws Exception {
+        productRepository.save(new Product("SecondProduct", 5.0, 10));
+
+        mockMvc.perform(get("/products?size=1&fields=id,stock&after=" + product.getId())
+                        .accept(CompactJson.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CompactJson.MEDIA_TYPE))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].stock").value(10))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[0].name").doesNotExist())
+                .andExpect(jsonPath("$[0]._links").doesNotExist());
+
+        mockMvc.perform(get("/products?size=1")
+                        .accept(CompactJson.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").exists())
+                .andExpect(header().string("Link", containsString("rel=\"next\"")));
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductByIdCompact() throws Exception {
+        String etag = mockMvc.perform(get("/products/" + product.getId() + "?fields=name")
+                        .accept(CompactJson.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"name\":\"ProductName\"}", true))
+                .andReturn().getResponse().getHeader("ETag");
+        String halEtag = mockMvc.perform(get("/products/" + product.getId()))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).isNotEqualTo(halEtag);
+
+        mockMvc.perform(get("/products/" + product.getId() + "?fields=name")
+                        .accept(CompactJson.MEDIA_TYPE)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/products/" + product.getId())
+                        .accept(CompactJson.MEDIA_TYPE)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductsCompactUnknownField() throws Exception {
+        mockMvc.perform(get("/products?fields=id,version")
+                        .accept(CompactJson.MEDIA_TYPE))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown field 'version', allowed fields are [id, name, price, stock]"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testGetProductsInvalidSort() throws Exception {
+        mockMvc.perform(get("/products?sort=secret")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testExportProducts() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get("/products/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult mvcResult = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+        assertThat(lines).isNotEmpty();
+        assertThat(lines[0]).startsWith("{").contains("\"name\":\"Milk\"");
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testImportProductsCsv() throws Exception {
+        String csv = "name,stock,price\n"
+                + "\"Cheese, aged\",4,12.5\n"
+                + "\n"
+                + "Butter,-1,3\n"
+                + "Yogurt,7,abc\n"
+                + "Cream,2,1.25\n";
+
+        mockMvc.perform(post("/products/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(4))
+                .andExpect(jsonPath("$.errors[0].reason").value("stock must not be negative"))
+                .andExpect(jsonPath("$.errors[1].line").value(5))
+                .andExpect(jsonPath("$.errors[1].reason").value("price is not a number: 'abc'"));
+
+        assertThat(productRepository.findAll()).extracting(Product::getName).contains("Cheese, aged", "Cream");
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testImportProductsNdjson() throws Exception {
+        String ndjson = "{\"name\":\"Honey\",\"price\":7.5,\"stock\":3}\n"
+                + "{\"name\":\"Jam\",\"price\":2\n"
+                + "{\"name\":\"\",\"price\":2,\"stock\":1}\n";
+
+        mockMvc.perform(post("/products/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].reason", containsString("Malformed JSON")))
+                .andExpect(jsonPath("$.errors[1].reason").value("name is required"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testImportProductsCsvWithoutHeader() throws Exception {
+        mockMvc.perform(post("/products/import")
+                        .contentType("text/csv")
+                        .content("Cheese,4,12.5\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("CSV header must name the name, price and stock columns")));
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testSearchProducts() throws Exception {
+        mockMvc.perform(get("/products/search?q=mil")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Milk"))
+                .andExpect(jsonPath("$[0].id").isNumber());
+    }
+
+    @Test
+    @WithMockUser(roles = {"READ"})
+    public void testSearchProductsQueryTooShort() throws Exception {
+        mockMvc.perform(get("/products/search?q=m")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Search query must have at least 2 characters"));
+    }
+
     @Test
     @WithMockUser(roles = {"READ"})
     public void testGetProductById() throws Exception {
@@ -70,6 +267,25 @@ public class ProductIntegrationTest {
         assertThat(responseBody).contains("ProductName");
     }
 
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testProductConditionalRequests() throws Exception {
+        String etag = mockMvc.perform(get("/products/" + product.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/products/" + product.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(put("/products/" + product.getId() + "/price?newPrice=1.5").header("If-Match", "\"42\""))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.message").value("Product " + product.getId() + " has been modified, current ETag is " + etag));
+        mockMvc.perform(put("/products/" + product.getId() + "/price?newPrice=1.5").header("If-Match", etag))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("ETag"));
+    }
+
     @Test
     @WithMockUser(roles = {"READ"})
     public void testGetProductByIdNotExists() throws Exception {
@@ -207,4 +423,102 @@ public class ProductIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError());
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testPatchProduct() throws Exception {
+        productRepository.flush();
+        // written behind Hibernate's back: a patch that rewrote every column would put the old name back
+        jdbcTemplate.update("update product set name = 'RenamedElsewhere' where id = ?", product.getId());
+
+        mockMvc.perform(patch("/products/{id}", product.getId())
+                        .contentType("application/merge-patch+json")
+                        .content("{\"price\": 17.5, \"stock\": 40}"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.price").value(17.5))
+                .andExpect(jsonPath("$.stock").value(40));
+        productRepository.flush();
+
+        assertThat(jdbcTemplate.queryForObject("select name from product where id = ?", String.class, product.getId()))
+                .isEqualTo("RenamedElsewhere");
+        assertThat(jdbcTemplate.queryForObject("select price from product where id = ?", Double.class, product.getId()))
+                .isEqualTo(17.5);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from price_change where product_id = ?", Integer.class, product.getId()))
+                .isEqualTo(1);
+
+        mockMvc.perform(patch("/products/{id}", product.getId())
+                        .contentType("application/merge-patch+json")
+                        .header("If-Match", "\"0\"")
+                        .content("{\"stock\": 1}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(patch("/products/{id}", product.getId())
+                        .contentType("application/merge-patch+json")
+                        .content("{\"stock\": null}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/products/{id}", 0)
+                        .contentType("application/merge-patch+json")
+                        .content("{\"stock\": 1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = {"WRITE"})
+    public void testPatchProducts() throws Exception {
+        Product second = productRepository.save(new Product("SecondProduct", 5.0, 10));
+
+        mockMvc.perform(patch("/products")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"" + product.getId() + "\": {\"stock\": 5}, \"0\": {\"stock\": 5},"
+                                + " \"" + second.getId() + "\": {\"name\": \"\"}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[0].product.stock").value(5))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$[1].productId").value(0))
+                .andExpect(jsonPath("$[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$[2].reason").value("name must be a non-blank string"));
+        productRepository.flush();
+
+        assertThat(jdbcTemplate.queryForObject("select stock from product where id = ?", Integer.class, product.getId()))
+                .isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("select name from product where id = ?", String.class, second.getId()))
+                .isEqualTo("SecondProduct");
+    }
+
+    @Test
+    // price changes reach the history after commit, which a test transaction never does
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @WithMockUser(roles = {"ADMIN"})
+    public void testPriceHistory() throws Exception {
+        Instant start = Instant.now();
+        try {
+            mockMvc.perform(put("/products/{id}/price?newPrice=24.99", product.getId()))
+                    .andExpect(status().isCreated());
+            mockMvc.perform(put("/products/{id}/price?newPrice=24.99", product.getId()))
+                    .andExpect(status().isCreated());
+            mockMvc.perform(put("/products/{id}/price?newPrice=21.5", product.getId()))
+                    .andExpect(status().isCreated());
+
+            mockMvc.perform(get("/products/{id}/prices", product.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.productId").value(product.getId()))
+                    .andExpect(jsonPath("$.prices.length()").value(2))
+                    .andExpect(jsonPath("$.prices[0].price").value(24.99))
+                    .andExpect(jsonPath("$.prices[1].price").value(21.5));
+            mockMvc.perform(get("/products/{id}/prices?from={from}&to={to}", product.getId(), start.minusSeconds(60), start))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.prices.length()").value(0));
+            mockMvc.perform(get("/products/{id}/prices?from={from}&to={to}", product.getId(), start, start.minusSeconds(60)))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/products/{id}/prices?from=yesterday", product.getId()))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            mockMvc.perform(delete("/products/{id}", product.getId()))
+                    .andExpect(status().isNoContent());
+        }
+        mockMvc.perform(get("/products/{id}/prices", product.getId()))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.shop.integrationTests;
+
+import com.example.shop.cache.ProductCache;
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.inventory.AtomicStockStrategy;
+import com.example.shop.inventory.OptimisticStockStrategy;
+import com.example.shop.inventory.PessimisticStockStrategy;
+import com.example.shop.inventory.StockStrategy;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class StockStrategyIntegrationTest {
+
+    private static final int STOCK = 10;
+    private static final int BUYERS = 25;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductCache productCache;
+
+    private Product product;
+
+    private Product other;
+
+    @BeforeEach
+    public void setUp() {
+        product = productRepository.save(new Product("Contended", 1.0, STOCK));
+        other = productRepository.save(new Product("Also contended", 1.0, STOCK));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        productRepository.deleteById(product.getId());
+        productRepository.deleteById(other.getId());
+    }
+
+    private int stock(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStock();
+    }
+
+    private SortedMap<Long, Integer> basket(int productQuantity, int otherQuantity) {
+        return new TreeMap<>(Map.of(product.getId(), productQuantity, other.getId(), otherQuantity));
+    }
+
+    private StockStrategy strategy(String name) {
+        return switch (name) {
+            case "optimistic" -> new OptimisticStockStrategy(productRepository, transactionTemplate, productCache, 100);
+            case "pessimistic" -> new PessimisticStockStrategy(productRepository, transactionTemplate, productCache);
+            default -> new AtomicStockStrategy(productRepository, transactionTemplate, productCache);
+        };
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"optimistic", "pessimistic", "atomic"})
+    public void testConcurrentReservationsNeverOversell(String name) throws Exception {
+        StockStrategy strategy = strategy(name);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            Callable<Boolean> buy = () -> {
+                try {
+                    return strategy.reserve(product.getId(), 1);
+                } catch (OptimisticLockingFailureException e) {
+                    return false;
+                }
+            };
+            for (int i = 0; i < BUYERS; i++) {
+                results.add(executor.submit(buy));
+            }
+            int sold = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) sold++;
+            }
+
+            int remaining = productRepository.findById(product.getId()).orElseThrow().getStock();
+            assertThat(remaining).isGreaterThanOrEqualTo(0);
+            assertThat(sold + remaining).isEqualTo(STOCK);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"optimistic", "pessimistic", "atomic"})
+    public void testReserveAndRelease(String name) {
+        StockStrategy strategy = strategy(name);
+
+        assertTrue(strategy.reserve(product.getId(), STOCK));
+        assertFalse(strategy.reserve(product.getId(), 1));
+        strategy.release(product.getId(), 3);
+
+        Product reloaded = productRepository.findById(product.getId()).orElseThrow();
+        assertThat(reloaded.getStock()).isEqualTo(3);
+        assertThat(reloaded.getVersion()).isEqualTo(product.getVersion() + 2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"optimistic", "pessimistic", "atomic"})
+    public void testUnknownProduct(String name) {
+        StockStrategy strategy = strategy(name);
+
+        assertThrows(ProductNotFoundException.class, () -> strategy.reserve(Long.MAX_VALUE, 1));
+        assertThrows(ProductNotFoundException.class, () -> strategy.release(Long.MAX_VALUE, 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"optimistic", "pessimistic", "atomic"})
+    public void testReserveAllTakesEveryProductOrNone(String name) {
+        StockStrategy strategy = strategy(name);
+
+        assertFalse(strategy.reserveAll(basket(3, STOCK + 1)));
+        assertThat(stock(product)).isEqualTo(STOCK);
+        assertThat(stock(other)).isEqualTo(STOCK);
+
+        assertTrue(strategy.reserveAll(basket(3, STOCK)));
+        assertThat(stock(product)).isEqualTo(STOCK - 3);
+        assertThat(stock(other)).isEqualTo(0);
+
+        strategy.releaseAll(basket(3, STOCK));
+        assertThat(stock(product)).isEqualTo(STOCK);
+        assertThat(stock(other)).isEqualTo(STOCK);
+
+        assertThrows(ProductNotFoundException.class,
+                () -> strategy.reserveAll(new TreeMap<>(Map.of(product.getId(), 1, Long.MAX_VALUE, 1))));
+        assertThat(stock(product)).isEqualTo(STOCK);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"optimistic", "pessimistic", "atomic"})
+    public void testConcurrentBasketsNeverOversell(String name) throws Exception {
+        StockStrategy strategy = strategy(name);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            Callable<Boolean> buy = () -> {
+                try {
+                    return strategy.reserveAll(basket(1, 1));
+                } catch (OptimisticLockingFailureException e) {
+                    return false;
+                }
+            };
+            for (int i = 0; i < BUYERS; i++) {
+                results.add(executor.submit(buy));
+            }
+            int sold = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) sold++;
+            }
+
+            assertThat(stock(product)).isEqualTo(stock(other)).isGreaterThanOrEqualTo(0);
+            assertThat(sold + stock(product)).isEqualTo(STOCK);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
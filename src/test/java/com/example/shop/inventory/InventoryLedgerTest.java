@@ -0,0 +1,145 @@
+package com.example.shop.inventory;
+
+import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.model.Product;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InventoryLedgerTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private InventoryLedger inventoryLedger;
+
+    private Product product;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        inventoryLedger = new InventoryLedger(productRepository, true, 500);
+
+        product = new Product("Test Product", 10.0, 100);
+        product.setId(1L);
+        when(productRepository.findAll()).thenReturn(List.of(product));
+        inventoryLedger.rebuild();
+    }
+
+    @Test
+    public void testReserve() {
+        assertTrue(inventoryLedger.reserve(1L, 40));
+        assertEquals(60, inventoryLedger.available(1L));
+
+        assertFalse(inventoryLedger.reserve(1L, 61));
+        assertEquals(60, inventoryLedger.available(1L));
+    }
+
+    @Test
+    public void testReserve_productNotFound() {
+        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class, () -> {
+            inventoryLedger.reserve(2L, 1);
+        });
+    }
+
+    @Test
+    public void testReserve_concurrentNeverOversells() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            results.add(executor.submit(() -> inventoryLedger.reserve(1L, 1)));
+        }
+        int accepted = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) accepted++;
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(100, accepted);
+        assertEquals(0, inventoryLedger.available(1L));
+    }
+
+    @Test
+    public void testFlush() {
+        inventoryLedger.reserve(1L, 30);
+        Product stale = new Product("Test Product", 10.0, 100);
+        stale.setId(1L);
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of(stale));
+
+        inventoryLedger.flush();
+
+        assertEquals(70, stale.getStock());
+        verify(productRepository, times(1)).saveAll(List.of(stale));
+
+        inventoryLedger.flush();
+        verify(productRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    public void testTrackAndOverlay() {
+        inventoryLedger.track(1L, 5);
+        Product loaded = new Product("Test Product", 10.0, 100);
+        loaded.setId(1L);
+
+        inventoryLedger.overlay(loaded);
+
+        assertEquals(5, loaded.getStock());
+    }
+
+    @Test
+    public void testSetKeepsReservationsSinceRead() {
+        int expected = inventoryLedger.available(1L);
+        inventoryLedger.reserve(1L, 30);
+
+        inventoryLedger.set(1L, expected, 50);
+        assertEquals(20, inventoryLedger.available(1L));
+
+        Product stale = new Product("Test Product", 10.0, 50);
+        stale.setId(1L);
+        when(productRepository.findAllById(List.of(1L))).thenReturn(List.of(stale));
+        inventoryLedger.flush();
+        assertEquals(20, stale.getStock());
+    }
+
+    @Test
+    public void testSetUndoneOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventoryLedger.set(1L, 100, 40);
+            assertEquals(40, inventoryLedger.available(1L));
+            inventoryLedger.reserve(1L, 10);
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(90, inventoryLedger.available(1L));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.shop.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedStockTest {
+
+    @Test
+    public void testReserveAcrossCells() {
+        StripedStock stock = new StripedStock(StripedStock.STRIPES * 3 + 1);
+        stock.stripe();
+
+        // no single cell holds this much, the reservation drains them all
+        assertTrue(stock.reserve(StripedStock.STRIPES * 3));
+        assertEquals(1, stock.available());
+        assertFalse(stock.reserve(2));
+        assertTrue(stock.reserve(1));
+        assertEquals(0, stock.available());
+    }
+
+    @Test
+    public void testSetReplacesStripedStock() {
+        StripedStock stock = new StripedStock(100);
+        stock.stripe();
+        stock.release(5);
+
+        stock.set(40);
+
+        assertEquals(40, stock.available());
+        assertTrue(stock.reserve(40));
+        assertFalse(stock.reserve(1));
+    }
+
+    @Test
+    public void testConcurrentReserveAndReleaseKeepTotal() throws Exception {
+        StripedStock stock = new StripedStock(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                int kept = 0;
+                for (int j = 0; j < 10_000; j++) {
+                    if (stock.reserve(3)) {
+                        if (j % 2 == 0) stock.release(3);
+                        else kept += 3;
+                    }
+                }
+                return kept;
+            }));
+        }
+        int reserved = 0;
+        for (Future<Integer> result : results) {
+            reserved += result.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(1000 - reserved, stock.available());
+        assertTrue(stock.available() >= 0 && stock.available() < 3);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.shop.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferAppenderTest {
+
+    private LoggerContext loggerContext;
+
+    private BlockingListAppender target;
+
+    private RingBufferAppender ringBuffer;
+
+    @BeforeEach
+    public void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        target = new BlockingListAppender();
+        target.setContext(loggerContext);
+        target.start();
+
+        ringBuffer = new RingBufferAppender();
+        ringBuffer.setContext(loggerContext);
+        ringBuffer.setName("test");
+        ringBuffer.setCapacity(2);
+        ringBuffer.addAppender(target);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        target.release.countDown();
+        ringBuffer.stop();
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        ringBuffer.setOverflowPolicy("drop_newest");
+        ringBuffer.start();
+
+        ringBuffer.doAppend(event("blocks the writer"));
+        assertTrue(target.writing.await(5, TimeUnit.SECONDS));
+        ringBuffer.doAppend(event("first"));
+        ringBuffer.doAppend(event("second"));
+        ringBuffer.doAppend(event("dropped"));
+
+        assertEquals(3, ringBuffer.getQueuedCount());
+        assertEquals(1, ringBuffer.getDroppedCount());
+
+        target.release.countDown();
+        ringBuffer.stop();
+        assertEquals(List.of("blocks the writer", "first", "second"), target.messages);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        ringBuffer.setOverflowPolicy("DROP_OLDEST");
+        ringBuffer.start();
+
+        ringBuffer.doAppend(event("blocks the writer"));
+        assertTrue(target.writing.await(5, TimeUnit.SECONDS));
+        ringBuffer.doAppend(event("dropped"));
+        ringBuffer.doAppend(event("second"));
+        ringBuffer.doAppend(event("third"));
+
+        assertEquals(4, ringBuffer.getQueuedCount());
+        assertEquals(1, ringBuffer.getDroppedCount());
+
+        target.release.countDown();
+        ringBuffer.stop();
+        assertEquals(List.of("blocks the writer", "second", "third"), target.messages);
+    }
+
+    private ILoggingEvent event(String message) {
+        return new LoggingEvent(getClass().getName(), loggerContext.getLogger("test"), Level.INFO, message, null, null);
+    }
+
+    private static class BlockingListAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(event.getFormattedMessage());
+        }
+    }
+}
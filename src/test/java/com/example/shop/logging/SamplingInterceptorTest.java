@@ -0,0 +1,38 @@
+package com.example.shop.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SamplingInterceptorTest {
+
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @AfterEach
+    public void tearDown() {
+        MDC.clear();
+    }
+
+    @Test
+    public void testAsyncHandlingClearsContainerThread() throws Exception {
+        SamplingProperties properties = new SamplingProperties();
+        properties.setDefaultRate(0.0);
+        SamplingInterceptor interceptor = new SamplingInterceptor(properties);
+        HandlerMethod handler = new HandlerMethod(this, getClass().getMethod("testAsyncHandlingClearsContainerThread"));
+
+        interceptor.preHandle(request, response, handler);
+        assertEquals(SamplingInterceptor.NOT_SAMPLED, MDC.get(SamplingInterceptor.SAMPLED_KEY));
+
+        interceptor.afterConcurrentHandlingStarted(request, response, handler);
+        assertNull(MDC.get(SamplingInterceptor.ENDPOINT_KEY));
+        assertNull(MDC.get(SamplingInterceptor.SAMPLED_KEY));
+    }
+}
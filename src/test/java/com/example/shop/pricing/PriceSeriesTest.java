@@ -0,0 +1,69 @@
+package com.example.shop.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceSeriesTest {
+
+    @Test
+    public void testRangeIsFromInclusiveToExclusive() {
+        PriceSeries series = new PriceSeries();
+        series.append(1_000, 9.99);
+        series.append(2_000, 10.49);
+        series.append(3_000, 8.5);
+
+        assertEquals(List.of("2000=10.49"), collect(series, 2_000, 3_000));
+        assertEquals(List.of("1000=9.99", "2000=10.49", "3000=8.5"), collect(series, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertTrue(collect(series, 3_001, Long.MAX_VALUE).isEmpty());
+        assertTrue(collect(series, 2_000, 2_000).isEmpty());
+        assertTrue(collect(new PriceSeries(), Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testTimesNeverGoBackwards() {
+        PriceSeries series = new PriceSeries();
+        series.append(5_000, 1);
+        series.append(4_000, 2);
+
+        assertEquals(List.of("5000=1.0", "5000=2.0"), collect(series, 5_000, 5_001));
+    }
+
+    @Test
+    public void testMatchesLinearScanAcrossBlocks() {
+        PriceSeries series = new PriceSeries();
+        List<long[]> expected = new ArrayList<>();
+        Random random = new Random(11);
+        long time = 1_700_000_000_000L;
+        long cents = 10_000;
+        for (int i = 0; i < PriceSeries.BLOCK * 40 + 7; i++) {
+            // repeated times put block anchors on equal values
+            time += random.nextInt(4) == 0 ? 0 : random.nextInt(1_000_000);
+            cents = Math.max(1, cents + random.nextInt(2_001) - 1_000);
+            series.append(time, cents / 100.0);
+            expected.add(new long[]{time, cents});
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            long from = expected.get(random.nextInt(expected.size()))[0] - random.nextInt(2);
+            long to = from + random.nextInt(100_000_000);
+            List<String> linear = new ArrayList<>();
+            for (long[] change : expected) {
+                if (change[0] >= from && change[0] < to) linear.add(change[0] + "=" + change[1] / 100.0);
+            }
+            assertEquals(linear, collect(series, from, to));
+        }
+        assertEquals(expected.size(), series.size());
+    }
+
+    private static List<String> collect(PriceSeries series, long from, long to) {
+        List<String> changes = new ArrayList<>();
+        series.forEach(from, to, (time, price) -> changes.add(time + "=" + price));
+        return changes;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.shop.reporting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongMultimapTest {
+
+    @Test
+    public void testValuesAreKeptSortedAndUnique() {
+        LongMultimap map = new LongMultimap();
+        for (long value : new long[]{5, 9, 1, 7, 9, 3}) {
+            map.put(42, value);
+        }
+
+        assertArrayEquals(new long[]{1, 3, 5, 7, 9}, map.get(42));
+        assertFalse(map.put(42, 7));
+        assertEquals(5, map.count(42));
+        assertEquals(1, map.keyCount());
+        assertEquals(5, map.valueCount());
+        assertArrayEquals(new long[0], map.get(43));
+    }
+
+    @Test
+    public void testRemovingTheLastValueRemovesTheKey() {
+        LongMultimap map = new LongMultimap();
+        map.put(1, 10);
+        map.put(1, 11);
+
+        assertTrue(map.remove(1, 10));
+        assertFalse(map.remove(1, 10));
+        assertFalse(map.remove(2, 11));
+        assertArrayEquals(new long[]{11}, map.get(1));
+        assertTrue(map.remove(1, 11));
+        assertEquals(0, map.keyCount());
+        assertEquals(0, map.count(1));
+    }
+
+    @Test
+    public void testMatchesBoxedMultimap() {
+        LongMultimap map = new LongMultimap();
+        Map<Long, TreeSet<Long>> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            // few distinct keys so that probe runs collide and get shifted back on removal
+            long key = random.nextInt(5_000) * 1024L;
+            long value = random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                TreeSet<Long> values = expected.get(key);
+                boolean removed = values != null && values.remove(value);
+                if (values != null && values.isEmpty()) expected.remove(key);
+                assertEquals(removed, map.remove(key, value));
+            } else {
+                assertEquals(expected.computeIfAbsent(key, k -> new TreeSet<>()).add(value), map.put(key, value));
+            }
+        }
+
+        assertEquals(expected.size(), map.keyCount());
+        assertEquals(expected.values().stream().mapToLong(TreeSet::size).sum(), map.valueCount());
+        expected.forEach((key, values) ->
+                assertArrayEquals(values.stream().mapToLong(Long::longValue).toArray(), map.get(key)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.shop.reporting;
+
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.dto.OrderTotals;
+import com.example.shop.dto.ProductSales;
+import com.example.shop.model.Order;
+import com.example.shop.model.Order.Status;
+import com.example.shop.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SalesAggregatesTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderArchive orderArchive;
+
+    private SalesAggregates salesAggregates;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        salesAggregates = new SalesAggregates(orderRepository, orderArchive, mock(PlatformTransactionManager.class));
+
+        when(orderRepository.sumByProductAndStatus()).thenReturn(List.of(
+                totals(1L, Status.IN_PROGRESS, 2, 5),
+                totals(1L, Status.COMPLETED, 3, 9)));
+        when(orderRepository.countByStatus(Status.IN_PROGRESS)).thenReturn(2L);
+        when(orderRepository.countByStatus(Status.COMPLETED)).thenReturn(3L);
+        salesAggregates.rebuild();
+    }
+
+    @Test
+    public void testRebuild() {
+        ProductSales sales = salesAggregates.get(1L);
+
+        assertTotals(sales, Status.IN_PROGRESS, 2, 5);
+        assertTotals(sales, Status.COMPLETED, 3, 9);
+        assertTotals(sales, Status.CANCELLED, 0, 0);
+        assertEquals(2, salesAggregates.count(Status.IN_PROGRESS));
+    }
+
+    @Test
+    public void testOrderLifecycle() {
+        Order order = new Order(1L, 4, Status.IN_PROGRESS);
+        salesAggregates.added(order);
+        assertTotals(salesAggregates.get(1L), Status.IN_PROGRESS, 3, 9);
+
+        order.setStatus(Status.CANCELLED);
+        salesAggregates.moved(order, Status.IN_PROGRESS);
+        assertTotals(salesAggregates.get(1L), Status.IN_PROGRESS, 2, 5);
+        assertTotals(salesAggregates.get(1L), Status.CANCELLED, 1, 4);
+
+        salesAggregates.removed(order);
+        assertTotals(salesAggregates.get(1L), Status.CANCELLED, 0, 0);
+    }
+
+    @Test
+    public void testUnknownProduct() {
+        ProductSales sales = salesAggregates.get(2L);
+
+        assertEquals(2L, sales.getProductId());
+        assertTotals(sales, Status.IN_PROGRESS, 0, 0);
+        assertEquals(1, salesAggregates.getAll().size());
+    }
+
+    @Test
+    public void testChangesInsideTransactionApplyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            salesAggregates.added(new Order(1L, 4, Status.IN_PROGRESS));
+            assertTotals(salesAggregates.get(1L), Status.IN_PROGRESS, 2, 5);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertTotals(salesAggregates.get(1L), Status.IN_PROGRESS, 3, 9);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testRebuildReplaysChangesCommittedMeanwhile() {
+        when(orderRepository.sumByProductAndStatus()).thenAnswer(invocation -> {
+            salesAggregates.added(new Order(1L, 4, Status.IN_PROGRESS));
+            return List.of(totals(1L, Status.IN_PROGRESS, 2, 5), totals(1L, Status.COMPLETED, 3, 9));
+        });
+
+        salesAggregates.rebuild();
+
+        assertTotals(salesAggregates.get(1L), Status.IN_PROGRESS, 3, 9);
+        assertEquals(3, salesAggregates.count(Status.IN_PROGRESS));
+    }
+
+    private static void assertTotals(ProductSales sales, Status status, long orders, long quantity) {
+        assertEquals(orders, sales.getStatuses().get(status).getOrders());
+        assertEquals(quantity, sales.getStatuses().get(status).getQuantity());
+    }
+
+    private static OrderTotals totals(Long productId, Status status, long orders, long quantity) {
+        return new OrderTotals() {
+            @Override
+            public Long getProductId() {
+                return productId;
+            }
+
+            @Override
+            public Status getStatus() {
+                return status;
+            }
+
+            @Override
+            public long getOrders() {
+                return orders;
+            }
+
+            @Override
+            public long getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.shop.search;
+
+import com.example.shop.dto.ProductName;
+import com.example.shop.dto.ProductSearchResult;
+import com.example.shop.exception.InvalidSearchQueryException;
+import com.example.shop.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProductSearchIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        index = new ProductSearchIndex(productRepository, transactionTemplate, 50, 50000);
+        index.load(Stream.of(
+                name(1L, "Wireless Mouse"),
+                name(2L, "Mouse Pad"),
+                name(3L, "Gaming Mouse Pad XL"),
+                name(4L, "Keyboard"),
+                name(5L, "Housemate Mug")));
+    }
+
+    @Test
+    public void testSearchRanksNamePrefixThenWordPrefixThenSubstring() {
+        List<ProductSearchResult> results = index.search("mouse", null);
+
+        assertEquals(List.of(2L, 1L, 3L), ids(results));
+        assertEquals("Mouse Pad", results.get(0).getName());
+    }
+
+    @Test
+    public void testSearchMatchesInsideWords() {
+        assertEquals(List.of(5L), ids(index.search("usem", null)));
+        assertEquals(List.of(4L), ids(index.search("BOARD", null)));
+    }
+
+    @Test
+    public void testTwoCharacterQueryMatchesWordStartsOnly() {
+        assertEquals(List.of(2L, 3L), ids(index.search("pa", null)));
+        assertTrue(index.search("ou", null).isEmpty());
+    }
+
+    @Test
+    public void testSearchNormalizesWhitespaceAndCase() {
+        assertEquals(List.of(2L, 3L), ids(index.search("  MOUSE   pad ", null)));
+    }
+
+    @Test
+    public void testSearchLimitsResults() {
+        assertEquals(List.of(2L), ids(index.search("mouse", 1)));
+    }
+
+    @Test
+    public void testIndexReplacesOldName() {
+        index.index(4L, "Mechanical Keypad");
+
+        assertTrue(index.search("board", null).isEmpty());
+        assertEquals(List.of(4L), ids(index.search("keypad", null)));
+        assertEquals("Mechanical Keypad", index.search("mech", null).get(0).getName());
+    }
+
+    @Test
+    public void testRemoveDropsProduct() {
+        index.remove(2L);
+
+        assertEquals(List.of(1L, 3L), ids(index.search("mouse", null)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testIndexAllMergesNewProducts() {
+        index.indexAll(Map.of(6L, "Mouse", 7L, "Trackball Mouse", 4L, "Keyboard Mouse"));
+
+        assertEquals(List.of(6L, 2L, 1L, 4L, 7L, 3L), ids(index.search("mouse", null)));
+        assertTrue(index.search("board", null).stream().allMatch(result -> result.getName().equals("Keyboard Mouse")));
+        assertEquals(7, index.size());
+    }
+
+    @Test
+    public void testInvalidQueries() {
+        assertThrows(InvalidSearchQueryException.class, () -> index.search("m", null));
+        assertThrows(InvalidSearchQueryException.class, () -> index.search(null, null));
+        assertThrows(InvalidSearchQueryException.class, () -> index.search("mouse", 0));
+        assertThrows(InvalidSearchQueryException.class, () -> index.search("mouse", 51));
+    }
+
+    @Test
+    public void testTrigramsAreDistinct() {
+        assertEquals(1, ProductSearchIndex.trigrams("aaaaa").length);
+        assertEquals(0, ProductSearchIndex.trigrams("ab").length);
+    }
+
+    private static List<Long> ids(List<ProductSearchResult> results) {
+        return results.stream().map(ProductSearchResult::getId).toList();
+    }
+
+    private static ProductName name(Long id, String name) {
+        return new ProductName() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+}
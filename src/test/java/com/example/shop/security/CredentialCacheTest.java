@@ -0,0 +1,74 @@
+package com.example.shop.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CredentialCacheTest {
+
+    private CredentialCache credentialCache;
+
+    private Authentication authentication;
+
+    @BeforeEach
+    public void setUp() {
+        credentialCache = new CredentialCache(2, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        authentication = UsernamePasswordAuthenticationToken.authenticated("admin", null, List.of());
+    }
+
+    @Test
+    public void testGet_hit() {
+        credentialCache.put("admin", "admin", authentication);
+
+        assertSame(authentication, credentialCache.get("admin", "admin"));
+        assertEquals(1, credentialCache.getHitCount());
+        assertEquals(0, credentialCache.getMissCount());
+    }
+
+    @Test
+    public void testGet_wrongPassword() {
+        credentialCache.put("admin", "admin", authentication);
+
+        assertNull(credentialCache.get("admin", "wrong"));
+        assertEquals(1, credentialCache.getMissCount());
+    }
+
+    @Test
+    public void testGet_expired() {
+        credentialCache = new CredentialCache(2, Duration.ZERO, new SimpleMeterRegistry());
+        credentialCache.put("admin", "admin", authentication);
+
+        assertNull(credentialCache.get("admin", "admin"));
+        assertEquals(0, credentialCache.size());
+    }
+
+    @Test
+    public void testPut_evictsEldest() {
+        credentialCache.put("first", "password", authentication);
+        credentialCache.put("second", "password", authentication);
+        credentialCache.put("third", "password", authentication);
+
+        assertEquals(2, credentialCache.size());
+        assertNull(credentialCache.get("first", "password"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        credentialCache.put("admin", "admin", authentication);
+        credentialCache.put("other", "admin", authentication);
+
+        credentialCache.invalidate("admin");
+
+        assertNull(credentialCache.get("admin", "admin"));
+        assertSame(authentication, credentialCache.get("other", "admin"));
+    }
+}
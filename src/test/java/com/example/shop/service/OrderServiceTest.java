@@ -1,12 +1,25 @@
 package com.example.shop.service;
 
+import com.example.shop.archive.OrderArchive;
+import com.example.shop.cache.ProductCache;
+import com.example.shop.dto.OrderBatchItemResult;
+import com.example.shop.etag.ResourceVersions;
 import com.example.shop.exception.InsufficientStockException;
+import com.example.shop.exception.InvalidOrderException;
 import com.example.shop.exception.OrderNotFoundException;
 import com.example.shop.exception.OrderNotInProgressException;
+import com.example.shop.exception.PreconditionFailedException;
 import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.expiry.OrderExpiry;
+import com.example.shop.inventory.InventoryLedger;
+import com.example.shop.inventory.StockStrategy;
+import com.example.shop.metrics.OrderRejections;
 import com.example.shop.model.Order;
 import com.example.shop.model.Order.Status;
+import com.example.shop.model.OrderLine;
 import com.example.shop.model.Product;
+import com.example.shop.reporting.OpenOrderIndex;
+import com.example.shop.reporting.SalesAggregates;
 import com.example.shop.repository.OrderRepository;
 import com.example.shop.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,16 +27,39 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,6 +72,38 @@ public class OrderServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private StockStrategy stockStrategy;
+
+    @Mock
+    private SalesAggregates salesAggregates;
+
+    @Mock
+    private OpenOrderIndex openOrderIndex;
+
+    @Mock
+    private ResourceVersions resourceVersions;
+
+    @Mock
+    private OrderExpiry orderExpiry;
+
+    @Mock
+    private OrderArchive orderArchive;
+
+    @Mock
+    private OrderRejections orderRejections;
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
     @InjectMocks
     private OrderService orderService;
 
@@ -45,6 +113,7 @@ public class OrderServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
 
         product = new Product();
         product.setId(1L);
@@ -61,7 +130,7 @@ public class OrderServiceTest {
 
     @Test
     public void testAddOrder_success() {
-        when(productRepository.findById(order.getProductId())).thenReturn(Optional.of(product));
+        when(stockStrategy.reserve(order.getProductId(), order.getQuantity())).thenReturn(true);
         when(orderRepository.save(any(Order.class))).thenReturn(order);
 
         Order createdOrder = orderService.addOrder(order);
@@ -69,34 +138,86 @@ public class OrderServiceTest {
         assertEquals(order.getId(), createdOrder.getId());
         assertEquals(Status.IN_PROGRESS, createdOrder.getStatus());
 
-        verify(productRepository, times(1)).findById(order.getProductId());
-        verify(productRepository, times(1)).save(any(Product.class));
+        verify(stockStrategy, times(1)).reserve(order.getProductId(), order.getQuantity());
         verify(orderRepository, times(1)).save(any(Order.class));
+        verify(inventoryLedger, times(0)).reserve(any(), anyInt());
+        verify(salesAggregates, times(1)).added(order);
+        verify(openOrderIndex, times(1)).opened(order);
+        verify(orderExpiry, times(1)).schedule(order);
     }
 
     @Test
     public void testAddOrder_productNotFound() {
-        when(productRepository.findById(order.getProductId())).thenReturn(Optional.empty());
+        when(stockStrategy.reserve(order.getProductId(), order.getQuantity())).thenThrow(new ProductNotFoundException(order.getProductId()));
 
         assertThrows(ProductNotFoundException.class, () -> {
             orderService.addOrder(order);
         });
 
-        verify(productRepository, times(1)).findById(order.getProductId());
         verify(orderRepository, times(0)).save(any(Order.class));
     }
 
     @Test
     public void testAddOrder_insufficientStock() {
-        product.setStock(5);
-        when(productRepository.findById(order.getProductId())).thenReturn(Optional.of(product));
+        when(stockStrategy.reserve(order.getProductId(), order.getQuantity())).thenReturn(false);
 
         assertThrows(InsufficientStockException.class, () -> {
             orderService.addOrder(order);
         });
 
-        verify(productRepository, times(1)).findById(order.getProductId());
+        verify(stockStrategy, times(1)).reserve(order.getProductId(), order.getQuantity());
+        verify(orderRepository, times(0)).save(any(Order.class));
+    }
+
+    @Test
+    public void testAddOrder_releasesStockWhenOrderSaveFails() {
+        when(stockStrategy.reserve(order.getProductId(), order.getQuantity())).thenReturn(true);
+        when(orderRepository.save(any(Order.class))).thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(IllegalStateException.class, () -> {
+            orderService.addOrder(order);
+        });
+
+        verify(stockStrategy, times(1)).release(order.getProductId(), order.getQuantity());
+        verify(salesAggregates, times(0)).added(any());
+    }
+
+    @Test
+    public void testAddOrder_multipleLinesReservedTogether() {
+        Order basket = new Order(List.of(new OrderLine(3L, 1), new OrderLine(1L, 2), new OrderLine(3L, 4)), null);
+        SortedMap<Long, Integer> quantities = new TreeMap<>(Map.of(1L, 2, 3L, 5));
+        when(stockStrategy.reserveAll(quantities)).thenReturn(true);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Order createdOrder = orderService.addOrder(basket);
+
+        assertEquals(List.of(new OrderLine(1L, 2), new OrderLine(3L, 5)), createdOrder.getLines());
+        assertEquals(Status.IN_PROGRESS, createdOrder.getStatus());
+        verify(stockStrategy, times(1)).reserveAll(quantities);
+        verify(stockStrategy, times(0)).reserve(any(), anyInt());
+        verify(resourceVersions, times(1)).changed(ResourceVersions.Resource.PRODUCTS, 1L);
+        verify(resourceVersions, times(1)).changed(ResourceVersions.Resource.PRODUCTS, 3L);
+    }
+
+    @Test
+    public void testAddOrder_multipleLinesInsufficientStock() {
+        Order basket = new Order(List.of(new OrderLine(1L, 2), new OrderLine(3L, 5)), null);
+        when(stockStrategy.reserveAll(any())).thenReturn(false);
+
+        assertThrows(InsufficientStockException.class, () -> orderService.addOrder(basket));
+
         verify(orderRepository, times(0)).save(any(Order.class));
+        verify(stockStrategy, times(0)).releaseAll(any());
+    }
+
+    @Test
+    public void testAddOrder_invalidLines() {
+        assertThrows(InvalidOrderException.class, () -> orderService.addOrder(new Order(List.of(), null)));
+        assertThrows(InvalidOrderException.class, () -> orderService.addOrder(new Order(List.of(new OrderLine(null, 1)), null)));
+        assertThrows(InvalidOrderException.class, () -> orderService.addOrder(new Order(List.of(new OrderLine(1L, 0)), null)));
+
+        verify(stockStrategy, times(0)).reserve(any(), anyInt());
+        verify(stockStrategy, times(0)).reserveAll(any());
     }
 
     @Test
@@ -121,6 +242,15 @@ public class OrderServiceTest {
         verify(orderRepository, times(1)).findById(order.getId());
     }
 
+    @Test
+    public void testFindOrder_archived() {
+        order.setStatus(Status.COMPLETED);
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.empty());
+        when(orderArchive.find(order.getId())).thenReturn(Optional.of(order));
+
+        assertEquals(order, orderService.findOrder(order.getId()));
+    }
+
     @Test
     public void testGetAllOrders() {
         List<Order> orders = Arrays.asList(order, new Order());
@@ -133,6 +263,37 @@ public class OrderServiceTest {
         verify(orderRepository, times(1)).findAll();
     }
 
+    @Test
+    public void testGetOrderPage_filtersByProductAndStatus() {
+        Window<Order> page = Window.from(List.of(order), ScrollPosition::offset);
+        when(orderRepository.findByProductIdAndStatus(eq(1L), eq(Status.IN_PROGRESS), any(), any(), any())).thenReturn(page);
+
+        Window<Order> result = orderService.getOrderPage(1L, Status.IN_PROGRESS, null, Limit.of(50), Sort.by("id"));
+
+        assertEquals(page, result);
+        verify(orderRepository, times(0)).findAllBy(any(), any(), any());
+        verify(orderRepository, times(0)).findByProductId(any(), any(), any(), any());
+        verify(orderRepository, times(0)).findByStatus(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testGetOrderPage_filtersByStatus() {
+        Window<Order> page = Window.from(List.of(order), ScrollPosition::offset);
+        when(orderRepository.findByStatus(eq(Status.IN_PROGRESS), any(), any(), any())).thenReturn(page);
+
+        assertEquals(page, orderService.getOrderPage(null, Status.IN_PROGRESS, null, Limit.of(50), Sort.by("id")));
+        verify(orderRepository, times(0)).findByProductIdAndStatus(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testGetOrderPage_unfiltered() {
+        Window<Order> page = Window.from(List.of(order), ScrollPosition::offset);
+        when(orderRepository.findAllBy(any(), any(), any())).thenReturn(page);
+
+        assertEquals(page, orderService.getOrderPage(null, null, null, Limit.of(50), Sort.by("id")));
+        verify(orderRepository, times(0)).findByProductId(any(), any(), any(), any());
+    }
+
     @Test
     public void testCompleteOrder_success() {
         order.setStatus(Status.IN_PROGRESS);
@@ -145,6 +306,19 @@ public class OrderServiceTest {
 
         verify(orderRepository, times(1)).findById(order.getId());
         verify(orderRepository, times(1)).save(any(Order.class));
+        verify(salesAggregates, times(1)).moved(order, Status.IN_PROGRESS);    verify(openOrderIndex, times(1)).closed(order);
+    }
+
+    @Test
+    public void testCompleteOrder_ifMatchFailed() {
+        order.setStatus(Status.IN_PROGRESS);
+        order.setVersion(1);
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
+
+        assertThrows(PreconditionFailedException.class, () -> orderService.completeOrder(order.getId(), "\"0\""));
+
+        verify(orderRepository, times(0)).save(any(Order.class));
+        assertEquals(Status.IN_PROGRESS, order.getStatus());
     }
 
     @Test
@@ -181,6 +355,7 @@ public class OrderServiceTest {
 
         verify(orderRepository, times(1)).findById(order.getId());
         verify(orderRepository, times(1)).deleteById(order.getId());
+        verify(salesAggregates, times(1)).removed(order);
     }
 
     @Test
@@ -194,22 +369,68 @@ public class OrderServiceTest {
         verify(orderRepository, times(1)).findById(order.getId());
     }
 
+    @Test
+    public void testDeleteOrder_archived() {
+        order.setStatus(Status.COMPLETED);
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.empty());
+        when(orderArchive.delete(order.getId())).thenReturn(Optional.of(order));
+
+        orderService.deleteOrder(order.getId());
+
+        verify(orderRepository, times(0)).deleteById(any());
+        verify(salesAggregates, times(1)).removed(order);
+    }
+
+    @Test
+    public void testCancelOrder_archived() {
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.empty());
+        when(orderArchive.contains(order.getId())).thenReturn(true);
+
+        assertThrows(OrderNotInProgressException.class, () -> orderService.cancelOrder(order.getId()));
+
+        verify(stockStrategy, times(0)).release(any(), anyInt());
+    }
+
     @Test
     public void testCancelOrder_success() {
         order.setStatus(Status.IN_PROGRESS);
         when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
-        when(productRepository.findById(order.getProductId())).thenReturn(Optional.of(product));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
 
         Order cancelledOrder = orderService.cancelOrder(order.getId());
         assertNotNull(cancelledOrder);
         assertEquals(Status.CANCELLED, cancelledOrder.getStatus());
 
         verify(orderRepository, times(1)).findById(order.getId());
-        verify(productRepository, times(1)).findById(order.getProductId());
-        verify(orderRepository, times(1)).save(any(Order.class));
-        verify(productRepository, times(1)).save(any(Product.class));
+        verify(stockStrategy, times(1)).release(order.getProductId(), order.getQuantity());
+        verify(orderRepository, times(1)).saveAndFlush(any(Order.class));
+        verify(salesAggregates, times(1)).moved(order, Status.IN_PROGRESS);
+        verify(openOrderIndex, times(1)).closed(order);
+    }
+
+    @Test
+    public void testCancelOrder_changedMeanwhileKeepsStock() {
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenThrow(new OptimisticLockingFailureException("completed meanwhile"));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> orderService.cancelOrder(order.getId()));
+
+        assertEquals(Status.IN_PROGRESS, order.getStatus());
+        verify(stockStrategy, times(0)).release(any(), anyInt());
+        verify(salesAggregates, times(0)).moved(any(), any());
+    }
+
+    @Test
+    public void testCancelOrder_releasesAllLines() {
+        order.setLines(List.of(new OrderLine(1L, 2), new OrderLine(3L, 5)));
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+
+        orderService.cancelOrder(order.getId());
+
+        verify(stockStrategy, times(1)).releaseAll(new TreeMap<>(Map.of(1L, 2, 3L, 5)));
+        verify(stockStrategy, times(0)).release(any(), anyInt());
+        verify(salesAggregates, times(1)).moved(order, Status.IN_PROGRESS);
     }
 
     @Test
@@ -221,9 +442,8 @@ public class OrderServiceTest {
         });
 
         verify(orderRepository, times(1)).findById(order.getId());
-        verify(orderRepository, times(0)).save(any(Order.class));
-        verify(productRepository, times(0)).findById(order.getProductId());
-        verify(productRepository, times(0)).save(any(Product.class));
+        verify(orderRepository, times(0)).saveAndFlush(any(Order.class));
+        verify(stockStrategy, times(0)).release(any(), anyInt());
     }
 
     @Test
@@ -236,23 +456,176 @@ public class OrderServiceTest {
         });
 
         verify(orderRepository, times(1)).findById(order.getId());
-        verify(orderRepository, times(0)).save(any(Order.class));
-        verify(productRepository, times(0)).findById(order.getProductId());
-        verify(productRepository, times(0)).save(any(Product.class));
+        verify(orderRepository, times(0)).saveAndFlush(any(Order.class));
+        verify(stockStrategy, times(0)).release(any(), anyInt());
     }
 
     @Test
     public void testCancelOrder_productNotFound() {
         order.setProductId(2L);
         when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+        doThrow(new ProductNotFoundException(2L)).when(stockStrategy).release(2L, order.getQuantity());
 
         assertThrows(ProductNotFoundException.class, () -> {
             orderService.cancelOrder(order.getId());
         });
 
+        // the failed release rolls the cancelled status back with it
         verify(orderRepository, times(1)).findById(order.getId());
+        assertEquals(Status.IN_PROGRESS, order.getStatus());
+        verify(salesAggregates, times(0)).moved(any(), any());
+    }
+
+    @Test
+    public void testAddOrder_ledgerSuccess() {
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.reserve(order.getProductId(), order.getQuantity())).thenReturn(true);
+        when(orderRepository.save(any(Order.class))).thenReturn(order);
+
+        Order createdOrder = orderService.addOrder(order);
+        assertEquals(Status.IN_PROGRESS, createdOrder.getStatus());
+
+        verify(inventoryLedger, times(1)).reserve(order.getProductId(), order.getQuantity());
+        verify(stockStrategy, times(0)).reserve(any(), anyInt());
+    }
+
+    @Test
+    public void testAddOrder_ledgerInsufficientStock() {
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.reserve(order.getProductId(), order.getQuantity())).thenReturn(false);
+
+        assertThrows(InsufficientStockException.class, () -> {
+            orderService.addOrder(order);
+        });
+
         verify(orderRepository, times(0)).save(any(Order.class));
-        verify(productRepository, times(1)).findById(order.getProductId());
-        verify(productRepository, times(0)).save(any(Product.class));
+    }
+
+    @Test
+    public void testCancelOrder_ledgerReleasesStock() {
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(orderRepository.findById(order.getId())).thenReturn(Optional.of(order));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+
+        Order cancelledOrder = orderService.cancelOrder(order.getId());
+        assertEquals(Status.CANCELLED, cancelledOrder.getStatus());
+
+        verify(inventoryLedger, times(1)).release(order.getProductId(), order.getQuantity());
+        verify(stockStrategy, times(0)).release(any(), anyInt());
+    }
+
+    @Test
+    public void testAddOrders_groupsByProduct() {
+        Order second = new Order(product.getId(), 80, null);
+        Order third = new Order(product.getId(), 20, null);
+        Order unknown = new Order(2L, 1, null);
+        when(productRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(product));
+
+        List<OrderBatchItemResult> results = orderService.addOrders(List.of(order, second, third, unknown));
+
+        assertEquals(4, results.size());
+        assertEquals(OrderBatchItemResult.Status.ACCEPTED, results.get(0).getStatus());
+        assertEquals(OrderBatchItemResult.Status.ACCEPTED, results.get(1).getStatus());
+        assertEquals(OrderBatchItemResult.Status.REJECTED, results.get(2).getStatus());
+        assertEquals(new InsufficientStockException().getMessage(), results.get(2).getReason());
+        assertEquals(OrderBatchItemResult.Status.REJECTED, results.get(3).getStatus());
+        assertEquals("Could not find product 2", results.get(3).getReason());
+        assertEquals(10, product.getStock());
+
+        verify(productRepository, times(1)).findAllByIdForUpdate(anyCollection());
+        verify(productRepository, times(0)).findById(any());
+        verify(orderRepository, times(1)).saveAll(List.of(order, second));
+    }
+
+    @Test
+    public void testAddOrders_ledger() {
+        Order second = new Order(product.getId(), 200, null);
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.reserve(product.getId(), 10)).thenReturn(true);
+        when(inventoryLedger.reserve(product.getId(), 200)).thenReturn(false);
+
+        List<OrderBatchItemResult> results = orderService.addOrders(List.of(order, second));
+
+        assertEquals(OrderBatchItemResult.Status.ACCEPTED, results.get(0).getStatus());
+        assertEquals(OrderBatchItemResult.Status.REJECTED, results.get(1).getStatus());
+        verify(productRepository, times(0)).findAllByIdForUpdate(anyCollection());
+        verify(orderRepository, times(1)).saveAll(anyList());
+        verify(orderRejections, times(1)).insufficientStock();
+    }
+
+    @Test
+    public void testAddOrders_ledgerReleasedWhenCommitFails() {
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.reserve(product.getId(), 10)).thenReturn(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderService.addOrders(List.of(order));
+            verify(inventoryLedger, times(0)).release(anyLong(), anyInt());
+
+            // the inserts only reach the database when the batch flushes at commit
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(inventoryLedger, times(1)).release(product.getId(), 10);
+    }
+
+    @Test
+    public void testExpireOrders_cancelsOrdersInProgress() {
+        Order completed = new Order(2L, 1, Status.COMPLETED);
+        completed.setId(2L);
+        when(orderRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(order, completed));
+        when(orderRepository.saveAndFlush(order)).thenReturn(order);
+
+        assertEquals(1, orderService.expireOrders(List.of(1L, 2L)));
+
+        assertEquals(Status.CANCELLED, order.getStatus());
+        assertEquals(Status.COMPLETED, completed.getStatus());
+        verify(stockStrategy, times(1)).release(1L, 10);
+        verify(stockStrategy, times(0)).release(eq(2L), anyInt());
+        verify(salesAggregates, times(1)).moved(order, Status.IN_PROGRESS);
+    }
+
+    @Test
+    public void testExpireOrders_keepsStockOfOrdersChangedMeanwhile() {
+        when(orderRepository.findAllById(List.of(1L))).thenReturn(List.of(order));
+        when(orderRepository.saveAndFlush(order)).thenThrow(new OptimisticLockingFailureException("completed meanwhile"));
+
+        assertEquals(0, orderService.expireOrders(List.of(1L)));
+
+        verify(stockStrategy, times(0)).release(any(), anyInt());
+        verify(salesAggregates, times(0)).moved(any(), any());
+        verify(orderExpiry, times(0)).retry(anyLong());
+    }
+
+    @Test
+    public void testExpireOrders_retriesOrderWhenReleaseFails() {
+        when(orderRepository.findAllById(List.of(1L))).thenReturn(List.of(order));
+        when(orderRepository.saveAndFlush(order)).thenReturn(order);
+        doThrow(new DataAccessResourceFailureException("database down")).when(stockStrategy).release(1L, 10);
+
+        assertEquals(0, orderService.expireOrders(List.of(1L)));
+
+        // the release shares the status save's transaction, so the order is rolled back and tried again
+        assertEquals(Status.IN_PROGRESS, order.getStatus());
+        verify(orderExpiry, times(1)).retry(1L);
+        verify(salesAggregates, times(0)).moved(any(), any());
+    }
+
+    @Test
+    public void testExpireOrders_retriesBatchWhenDatabaseFails() {
+        when(orderExpiry.isEnabled()).thenReturn(true);
+        when(orderExpiry.due(anyLong())).thenReturn(new long[]{1L, 2L});
+        when(orderRepository.findAllById(List.of(1L, 2L))).thenThrow(new DataAccessResourceFailureException("database down"));
+
+        orderService.expireOrders();
+
+        verify(orderExpiry, times(1)).retry(1L);
+        verify(orderExpiry, times(1)).retry(2L);
+        verify(stockStrategy, times(0)).release(any(), anyInt());
     }
 }
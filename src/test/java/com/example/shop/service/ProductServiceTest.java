@@ -1,14 +1,33 @@
 package com.example.shop.service;
 
+import com.example.shop.cache.ProductCache;
+import com.example.shop.dto.ProductPatchResult;
+import com.example.shop.etag.ResourceVersions;
+import com.example.shop.exception.InvalidPatchException;
+import com.example.shop.exception.InvalidPriceRangeException;
+import com.example.shop.exception.PreconditionFailedException;
 import com.example.shop.exception.ProductNotFoundException;
+import com.example.shop.inventory.InventoryLedger;
 import com.example.shop.model.Product;
+import com.example.shop.pricing.PriceHistory;
 import com.example.shop.repository.ProductRepository;
+import com.example.shop.search.ProductSearchIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.mockito.Spy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -17,7 +36,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyDouble;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,6 +50,26 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private InventoryLedger inventoryLedger;
+
+    @Mock
+    private ProductSearchIndex productSearchIndex;
+
+    @Mock
+    private ResourceVersions resourceVersions;
+
+    @Mock
+    private PriceHistory priceHistory;
+
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
     @InjectMocks
     private ProductService productService;
 
@@ -34,6 +78,7 @@ public class ProductServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
         product = new Product();
         product.setId(1L);
         product.setName("Test Product");
@@ -65,6 +110,46 @@ public class ProductServiceTest {
         verify(productRepository, times(1)).findById(1L);
     }
 
+    @Test
+    public void testFindProduct_cached() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        productService.findProduct(1L);
+        Product foundProduct = productService.findProduct(1L);
+        assertEquals(product.getName(), foundProduct.getName());
+
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void testFindProduct_ledgerStockLeavesCachedProduct() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(inventoryLedger.isEnabled()).thenReturn(true);
+        when(inventoryLedger.overlay(any(Product.class))).thenAnswer(invocation -> {
+            Product overlaid = invocation.getArgument(0);
+            overlaid.setStock(7);
+            return overlaid;
+        });
+
+        Product foundProduct = productService.findProduct(1L);
+        assertEquals(7, foundProduct.getStock());
+        assertEquals(100, product.getStock());
+        assertEquals(100, productCache.get(1L, key -> null).getStock());
+    }
+
+    @Test
+    public void testFindProduct_invalidatedByUpdate() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        productService.findProduct(1L);
+        productService.updateProductName(1L, "Renamed");
+        productService.findProduct(1L);
+
+        verify(productCache, times(1)).invalidate(1L);
+        verify(productRepository, times(3)).findById(1L);
+    }
+
     @Test
     public void testFindProductNotFound() {
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
@@ -135,6 +220,8 @@ public class ProductServiceTest {
 
         verify(productRepository, times(1)).findById(1L);
         verify(productRepository, times(1)).deleteById(1L);
+        verify(productSearchIndex, times(1)).remove(1L);
+        verify(priceHistory, times(1)).remove(1L);
     }
 
     @Test
@@ -160,6 +247,58 @@ public class ProductServiceTest {
 
         verify(productRepository, times(1)).findById(1L);
         verify(productRepository, times(1)).save(any(Product.class));
+        verify(priceHistory, times(1)).record(1L, newPrice);
+    }
+
+    @Test
+    public void testUpdateProductPriceRollsBackWithoutHistory() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+        doThrow(new DataAccessResourceFailureException("database down")).when(priceHistory).record(1L, 15.0);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> productService.updateProductPrice(1L, 15.0));
+
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(0)).commit(any());
+    }
+
+    @Test
+    public void testUnchangedPriceIsNotRecorded() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        productService.updateProductPrice(1L, 10.0);
+
+        verify(productRepository, times(1)).save(any(Product.class));
+        verify(priceHistory, times(0)).record(anyLong(), anyDouble());
+    }
+
+    @Test
+    public void testGetPriceHistory() {
+        Instant from = Instant.parse("2024-01-01T00:00:00Z");
+        Instant to = Instant.parse("2025-01-01T00:00:00Z");
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertEquals(1L, productService.getPriceHistory(1L, from, to).getProductId());
+        verify(priceHistory, times(1)).between(1L, from, to);
+
+        assertThrows(InvalidPriceRangeException.class, () -> productService.getPriceHistory(1L, to, from));
+        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+        assertThrows(ProductNotFoundException.class, () -> productService.getPriceHistory(2L, from, to));
+    }
+
+    @Test
+    public void testUpdateProductPriceIfMatch() {
+        product.setVersion(3);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        assertThrows(PreconditionFailedException.class, () -> productService.updateProductPrice(1L, 15.0, "\"2\""));
+        verify(productRepository, times(0)).save(any(Product.class));
+
+        Product result = productService.updateProductPrice(1L, 15.0, "\"3\"");
+        assertEquals(15.0, result.getPrice());
+        verify(resourceVersions, times(1)).changed(ResourceVersions.Resource.PRODUCTS, 1L);
     }
 
     @Test
@@ -214,6 +353,7 @@ public class ProductServiceTest {
 
         verify(productRepository, times(1)).findById(1L);
         verify(productRepository, times(1)).save(any(Product.class));
+        verify(productSearchIndex, times(1)).index(1L, newName);
     }
 
     @Test
@@ -228,4 +368,57 @@ public class ProductServiceTest {
         verify(productRepository, times(1)).findById(1L);
         verify(productRepository, times(0)).save(any(Product.class));
     }
+
+    @Test
+    public void testPatchProduct() throws Exception {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(inventoryLedger.stock(product)).thenReturn(100);
+
+        Product result = productService.patchProduct(1L, json("{\"name\": \"Test Product\", \"price\": 12.5, \"stock\": 7}"), null);
+        assertEquals("Test Product", result.getName());
+        assertEquals(12.5, result.getPrice());
+        assertEquals(7, result.getStock());
+
+        verify(productRepository, times(0)).save(any(Product.class));
+        verify(productSearchIndex, times(0)).index(anyLong(), anyString());
+        verify(priceHistory, times(1)).record(1L, 12.5);
+        verify(inventoryLedger, times(1)).set(1L, 100, 7);
+        verify(resourceVersions, times(1)).changed(ResourceVersions.Resource.PRODUCTS, 1L);
+    }
+
+    @Test
+    public void testPatchProductRejectsInvalidPatch() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(1L, json("{\"name\": null}"), null));
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(1L, json("{\"id\": 2}"), null));
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(1L, json("{\"stock\": -1}"), null));
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(1L, json("{\"price\": \"free\"}"), null));
+        assertThrows(InvalidPatchException.class, () -> productService.patchProduct(1L, json("[]"), null));
+        assertEquals(10.0, product.getPrice());
+        verify(resourceVersions, times(0)).changed(any(), anyLong());
+    }
+
+    @Test
+    public void testPatchProducts() throws Exception {
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+
+        List<ProductPatchResult> results = productService.patchProducts(
+                json("{\"1\": {\"stock\": 3.5}, \"2\": {\"stock\": 3}}"));
+        assertEquals(2, results.size());
+        assertEquals(ProductPatchResult.Status.REJECTED, results.get(0).getStatus());
+        assertEquals("stock must be a non-negative integer", results.get(0).getReason());
+        assertEquals(ProductPatchResult.Status.REJECTED, results.get(1).getStatus());
+        assertEquals(2L, results.get(1).getProductId());
+
+        results = productService.patchProducts(json("{\"1\": {\"name\": \"Renamed\"}}"));
+        assertEquals(ProductPatchResult.Status.ACCEPTED, results.get(0).getStatus());
+        assertEquals("Renamed", results.get(0).getProduct().getName());
+        verify(productSearchIndex, times(1)).index(1L, "Renamed");
+        assertThrows(InvalidPatchException.class, () -> productService.patchProducts(json("{\"one\": {}}")));
+    }
+
+    private static JsonNode json(String content) throws Exception {
+        return new ObjectMapper().readTree(content);
+    }
 }
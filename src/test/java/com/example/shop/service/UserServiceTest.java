@@ -2,6 +2,7 @@ package com.example.shop.service;
 
 import com.example.shop.model.User;
 import com.example.shop.repository.UserRepository;
+import com.example.shop.security.CredentialCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -28,6 +29,9 @@ public class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private CredentialCache credentialCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -58,6 +62,7 @@ public class UserServiceTest {
 
         verify(passwordEncoder, times(1)).encode("password");
         verify(userRepository, times(1)).save(user);
+        verify(credentialCache, times(1)).invalidate(user.getUsername());
     }
 
     @Test